@@ -0,0 +1,383 @@
+import java.util.Arrays;
+
+// a computer player that searches the game tree with iterative-deepening
+// alpha-beta (negamax) search
+// positions are Zobrist hashed into a transposition table, the search stops when
+// its time budget for the move runs out, and the number of nodes searched is kept
+// so that the search speed can be reported
+// evaluations are kept in a PositionCache, which several players can share to
+// reuse each other's work on the same openings
+// a ThreatTracker follows the search, so a move that wins at once is played
+// without searching, and when the other player has one, only the cells that block
+// it are searched
+class AlphaBetaPlayer implements MoveStrategy {
+  // the score of a win found right away, wins further away score a little less
+  static final int WIN = 1000000;
+  static final int INFINITY = WIN + 1;
+
+  long budgetNanos;
+  TranspositionTable table;
+  Zobrist zobrist;
+  PositionCache cache;
+
+  // the private copy of the board the search plays on
+  Board board;
+  // kept up to date with every move the search makes and takes back
+  WinDetector wins;
+  ThreatTracker threats;
+  DistanceEvaluator evaluator;
+  // the playable cells, nearest the center first
+  int[] order;
+
+  // the best move found by the last search of the root, kept here rather than read
+  // back from the table, where another position may have replaced it
+  int rootMove;
+  long deadline;
+  boolean stopped;
+  long nodes;
+  long searchNanos;
+  int depthReached;
+
+  // constructs a player that spends at most the given number of milliseconds on
+  // a move, with a transposition table of 2^tableBits entries, that keeps its
+  // win checks and evaluations in the given cache
+  AlphaBetaPlayer(long budgetMillis, int tableBits, PositionCache cache) {
+    if (budgetMillis <= 0) {
+      throw new IllegalArgumentException("The time budget must be positive");
+    }
+    this.budgetNanos = budgetMillis * 1000000L;
+    this.table = new TranspositionTable(tableBits);
+    this.cache = cache;
+    this.zobrist = null;
+    this.board = null;
+    this.evaluator = null;
+  }
+
+  // constructs a player with a cache of its own
+  AlphaBetaPlayer(long budgetMillis, int tableBits) {
+    this(budgetMillis, tableBits, new PositionCache(1 << 16));
+  }
+
+  // constructs a player that answers within a 0.05s tick of the game
+  AlphaBetaPlayer() {
+    this(40, 20);
+  }
+
+  // chooses the best move found for the given player before time runs out
+  public int chooseMove(Board board, int player) {
+    this.prepare(board);
+    this.nodes = 0;
+    this.stopped = false;
+    this.depthReached = 0;
+    long start = System.nanoTime();
+    this.deadline = start + this.budgetNanos;
+
+    long hash = this.zobrist.hash(this.board, player);
+    int empty = 0;
+    for (int i : this.order) {
+      if (!this.board.taken(i)) {
+        empty += 1;
+      }
+    }
+
+    int best = -1;
+    for (int depth = 1; depth <= empty && !this.stopped; depth++) {
+      this.rootMove = -1;
+      int value = this.search(depth, -INFINITY, INFINITY, player, 0, hash);
+      if (!this.stopped && this.rootMove != -1) {
+        best = this.rootMove;
+        this.depthReached = depth;
+        if (Math.abs(value) >= WIN - empty) {
+          break;
+        }
+      }
+    }
+    if (best == -1) {
+      // not even one level finished, so play the first move in order
+      best = this.firstOpen();
+    }
+    this.searchNanos = System.nanoTime() - start;
+    return best;
+  }
+
+  // copies the given board for the search, and sets up the tables that only
+  // depend on the board size when the size has changed
+  void prepare(Board board) {
+    if (this.board == null || this.board.size != board.size) {
+      this.zobrist = new Zobrist(board);
+      this.table.clear();
+      this.order = this.centerOrder(board);
+    }
+    this.board = board.copy();
+    Board b = this.board;
+    this.wins = new WinDetector(b);
+    this.threats = new ThreatTracker(this.wins);
+    if (this.evaluator == null) {
+      this.evaluator = new DistanceEvaluator(b);
+    }
+    else {
+      this.evaluator.solve(b);
+    }
+  }
+
+  // the interior cells that are open at the start of the game, nearest the center
+  // of the board first
+  int[] centerOrder(Board board) {
+    int count = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.interior(i) && this.zobrist.isOpen(board, i)) {
+        count += 1;
+      }
+    }
+    int[] result = new int[count];
+    int next = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.interior(i) && this.zobrist.isOpen(board, i)) {
+        result[next] = i;
+        next += 1;
+      }
+    }
+    int center = board.size / 2;
+    // an insertion sort keeps the order stable and the boards are small
+    for (int i = 1; i < result.length; i++) {
+      int cell = result[i];
+      int distance = this.centerDistance(board, cell, center);
+      int j = i - 1;
+      while (j >= 0 && this.centerDistance(board, result[j], center) > distance) {
+        result[j + 1] = result[j];
+        j -= 1;
+      }
+      result[j + 1] = cell;
+    }
+    return result;
+  }
+
+  // how far the given cell is from the center of the board
+  int centerDistance(Board board, int index, int center) {
+    return Math.abs(board.x(index) - center) + Math.abs(board.y(index) - center);
+  }
+
+  // the first open cell in the search order, or -1 if there is none
+  int firstOpen() {
+    for (int i : this.order) {
+      if (!this.board.taken(i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // the value of the position for the player to move, searched to the given depth
+  // ply counts the moves made since the root of the search
+  int search(int depth, int alpha, int beta, int player, int ply, long hash) {
+    this.nodes += 1;
+    // a search whose thread is interrupted stops as if its time had run out
+    if ((this.nodes & 1023) == 0
+        && (System.nanoTime() > this.deadline || Thread.currentThread().isInterrupted())) {
+      this.stopped = true;
+    }
+    if (this.stopped) {
+      return 0;
+    }
+
+    int original = alpha;
+    int slot = this.table.find(hash);
+    int tableMove = -1;
+    if (slot != -1) {
+      tableMove = this.table.moves[slot];
+      if (ply > 0 && this.table.depths[slot] >= depth) {
+        int value = this.table.valueAt(slot, ply);
+        byte bound = this.table.bounds[slot];
+        if (bound == TranspositionTable.EXACT) {
+          return value;
+        }
+        else if (bound == TranspositionTable.LOWER) {
+          alpha = Math.max(alpha, value);
+        }
+        else {
+          beta = Math.min(beta, value);
+        }
+        if (alpha >= beta) {
+          return value;
+        }
+      }
+    }
+    // a move that wins at once needs no search, even at the horizon
+    int winning = this.threats.first(player);
+    if (winning != -1) {
+      if (ply == 0) {
+        this.rootMove = winning;
+      }
+      this.table.store(hash, depth, WIN - ply, ply, TranspositionTable.EXACT, winning);
+      return WIN - ply;
+    }
+    if (depth == 0) {
+      return this.cachedEvaluation(player, hash);
+    }
+    // when the other player has a move that wins at once, every move but a block
+    // loses, so only blocks are searched
+    boolean mustBlock = this.threats.count(3 - player) > 0;
+
+    int best = -INFINITY;
+    int bestMove = -1;
+    for (int k = -1; k < this.order.length; k++) {
+      int move = k == -1 ? tableMove : this.order[k];
+      if (move == -1 || (k >= 0 && move == tableMove) || !this.board.playable(move)
+          || (mustBlock && !this.threats.winning(3 - player, move))) {
+        continue;
+      }
+      int winsMark = this.wins.mark();
+      int threatsMark = this.threats.mark();
+      this.board.claim(move, player);
+      this.wins.claim(move);
+      this.threats.claim(move);
+      this.evaluator.update(move);
+      long next = hash ^ this.zobrist.key(player, move) ^ this.zobrist.playerTwoToMove;
+      int value = -this.search(depth - 1, -beta, -alpha, 3 - player, ply + 1, next);
+      this.board.claim(move, 0);
+      this.wins.undo(winsMark);
+      this.threats.undo(threatsMark);
+      this.evaluator.update(move);
+      if (this.stopped) {
+        return 0;
+      }
+      if (value > best) {
+        best = value;
+        bestMove = move;
+      }
+      alpha = Math.max(alpha, value);
+      if (alpha >= beta) {
+        break;
+      }
+    }
+    if (bestMove == -1) {
+      // a full board always has a winner, so this is never reached in play
+      return 0;
+    }
+
+    if (ply == 0) {
+      this.rootMove = bestMove;
+    }
+    byte bound = TranspositionTable.EXACT;
+    if (best <= original) {
+      bound = TranspositionTable.UPPER;
+    }
+    else if (best >= beta) {
+      bound = TranspositionTable.LOWER;
+    }
+    this.table.store(hash, depth, best, ply, bound, bestMove);
+    return best;
+  }
+
+  // the static value of the position with the given hash, for the player to move,
+  // looked up in the cache first
+  int cachedEvaluation(int player, long hash) {
+    long entry = this.cache.get(hash);
+    if (entry != PositionCache.MISSING
+        && PositionCache.evaluationOf(entry) != PositionCache.UNKNOWN) {
+      return PositionCache.evaluationOf(entry);
+    }
+    int value = this.evaluate(player);
+    this.cache.put(hash, 0, value);
+    return value;
+  }
+
+  // the static value of a position without a winner, for the player to move:
+  // how many fewer cells they need to connect than the other player
+  int evaluate(int player) {
+    return this.evaluator.evaluate(player);
+  }
+
+  // the number of positions searched per second during the last move
+  double nodesPerSecond() {
+    if (this.searchNanos == 0) {
+      return 0;
+    }
+    return this.nodes * 1e9 / this.searchNanos;
+  }
+}
+
+// a fixed-size table of search results keyed by Zobrist hash
+// each slot holds one position and a new result replaces the old one unless the
+// old one is for the same position and was searched deeper
+class TranspositionTable {
+  static final byte EXACT = 0;
+  static final byte LOWER = 1;
+  static final byte UPPER = 2;
+
+  long[] keys;
+  int[] values;
+  int[] moves;
+  byte[] depths;
+  byte[] bounds;
+  boolean[] used;
+  int mask;
+
+  // constructs a table with 2^bits slots
+  TranspositionTable(int bits) {
+    if (bits < 1 || bits > 28) {
+      throw new IllegalArgumentException("A table must have between 2^1 and 2^28 slots");
+    }
+    int size = 1 << bits;
+    this.keys = new long[size];
+    this.values = new int[size];
+    this.moves = new int[size];
+    this.depths = new byte[size];
+    this.bounds = new byte[size];
+    this.used = new boolean[size];
+    this.mask = size - 1;
+  }
+
+  // the slot holding the given position, or -1 if it is not in the table
+  int find(long hash) {
+    int slot = (int) hash & this.mask;
+    if (this.used[slot] && this.keys[slot] == hash) {
+      return slot;
+    }
+    return -1;
+  }
+
+  // the best move stored for the given position, or -1 if there is none
+  int moveFor(long hash) {
+    int slot = this.find(hash);
+    return slot == -1 ? -1 : this.moves[slot];
+  }
+
+  // the value stored in the given slot, seen from the given ply
+  // wins are stored as distances from the stored position, not from the root
+  int valueAt(int slot, int ply) {
+    int value = this.values[slot];
+    if (value > AlphaBetaPlayer.WIN / 2) {
+      return value - ply;
+    }
+    else if (value < -AlphaBetaPlayer.WIN / 2) {
+      return value + ply;
+    }
+    return value;
+  }
+
+  // records the result of searching a position
+  void store(long hash, int depth, int value, int ply, byte bound, int move) {
+    int slot = (int) hash & this.mask;
+    if (this.used[slot] && this.keys[slot] == hash && this.depths[slot] > depth) {
+      return;
+    }
+    if (value > AlphaBetaPlayer.WIN / 2) {
+      value += ply;
+    }
+    else if (value < -AlphaBetaPlayer.WIN / 2) {
+      value -= ply;
+    }
+    this.used[slot] = true;
+    this.keys[slot] = hash;
+    this.depths[slot] = (byte) Math.min(depth, Byte.MAX_VALUE);
+    this.values[slot] = value;
+    this.bounds[slot] = bound;
+    this.moves[slot] = move;
+  }
+
+  // forgets every stored result
+  void clear() {
+    Arrays.fill(this.used, false);
+  }
+}
@@ -0,0 +1,113 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// asks a strategy for its moves on a thread of its own, so that the world's event
+// loop keeps drawing while the computer thinks
+// the world polls once a tick: the first poll in a position hands the strategy a
+// private copy of the board, and a later poll picks up the move once it is ready
+// a search for a position that has since changed is cancelled, and a search that
+// runs past the time budget is given up on in favor of a random move
+// the budget counts from when the search starts running, not from when it was
+// asked for, so a search waiting behind a cancelled one still gets all of it
+// the strategy only ever runs on the one thread, one search at a time, so
+// strategies that keep state between moves need no locking
+class AsyncMoveProvider {
+  // what poll returns while the strategy is still thinking
+  static final int THINKING = -2;
+
+  MoveStrategy strategy;
+  long budgetNanos;
+  ExecutorService executor;
+  MoveStrategy fallback;
+  // the search in progress, or null, with the board version, and once the search
+  // is running on the thread, the time it started at
+  Future<Integer> pending;
+  int pendingVersion;
+  volatile boolean started;
+  volatile long startedAt;
+  long requests;
+  long cancelled;
+  long timeouts;
+
+  // constructs a provider that gives the strategy at most the given number of
+  // milliseconds for a move
+  AsyncMoveProvider(MoveStrategy strategy, long budgetMillis) {
+    if (budgetMillis <= 0) {
+      throw new IllegalArgumentException("The time budget must be positive");
+    }
+    this.strategy = strategy;
+    this.budgetNanos = budgetMillis * 1000000L;
+    this.executor = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "bridgit-move");
+      // a search still running must not keep the program alive
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.fallback = new RandomStrategy(System.nanoTime());
+    this.pending = null;
+  }
+
+  // the strategy's move for the given player on the given board, -1 if it has
+  // none, or THINKING if it is not ready yet
+  int poll(Board board, int player) {
+    if (this.pending != null && this.pendingVersion != board.version) {
+      this.cancel();
+    }
+    if (this.pending == null) {
+      this.start(board, player);
+      return THINKING;
+    }
+    if (this.pending.isDone()) {
+      Future<Integer> done = this.pending;
+      this.pending = null;
+      try {
+        return done.get();
+      }
+      catch (InterruptedException | CancellationException e) {
+        return THINKING;
+      }
+      catch (ExecutionException e) {
+        throw new IllegalStateException("The strategy failed", e.getCause());
+      }
+    }
+    if (this.started && System.nanoTime() - this.startedAt > this.budgetNanos) {
+      this.cancel();
+      this.timeouts += 1;
+      return this.fallback.chooseMove(board, player);
+    }
+    return THINKING;
+  }
+
+  // starts a search on a copy of the given board
+  void start(Board board, int player) {
+    Board snapshot = board.copy();
+    this.started = false;
+    this.pending = this.executor.submit(() -> {
+      this.startedAt = System.nanoTime();
+      this.started = true;
+      return this.strategy.chooseMove(snapshot, player);
+    });
+    this.pendingVersion = board.version;
+    this.requests += 1;
+  }
+
+  // stops the search in progress, if there is one
+  // a search that has started is interrupted, and its move is never used; the
+  // strategies here check for interrupts as they check their own deadlines
+  void cancel() {
+    if (this.pending != null) {
+      this.pending.cancel(true);
+      this.pending = null;
+      this.cancelled += 1;
+    }
+  }
+
+  // stops the search in progress and the thread
+  void shutdown() {
+    this.cancel();
+    this.executor.shutdownNow();
+  }
+}
@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+// plays many headless games between two strategies on a pool of threads
+// each thread reuses one game and one pair of strategies, made from the given
+// factories with the thread's number, and takes games from a shared counter in
+// blocks so that threads rarely touch shared state
+class BatchRunner {
+  // how many games a thread takes from the counter at a time
+  static final int BLOCK = 256;
+
+  int boardSize;
+  LongFunction<MoveStrategy> first;
+  LongFunction<MoveStrategy> second;
+  int threads;
+
+  // constructs a runner for the given board size and strategy factories
+  BatchRunner(int boardSize, LongFunction<MoveStrategy> first,
+      LongFunction<MoveStrategy> second, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("There must be at least one thread");
+    }
+    // fails early on a bad size
+    new BridgItGame(boardSize);
+    this.boardSize = boardSize;
+    this.first = first;
+    this.second = second;
+    this.threads = threads;
+  }
+
+  public static void main(String[] args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+    long games = args.length > 1 ? Long.parseLong(args[1]) : 1000000;
+    int threads = Runtime.getRuntime().availableProcessors();
+    BatchRunner runner = new BatchRunner(size,
+        seed -> new RandomStrategy(seed), seed -> new RandomStrategy(~seed), threads);
+    System.out.println(runner.run(games));
+  }
+
+  // plays the given number of games and adds up the results
+  BatchResult run(long games) {
+    AtomicLong next = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+    ArrayList<Callable<long[]>> workers = new ArrayList<Callable<long[]>>();
+    for (int i = 0; i < this.threads; i++) {
+      long seed = i;
+      workers.add(() -> this.work(seed, next, games));
+    }
+    long start = System.nanoTime();
+    long[] totals = new long[3];
+    try {
+      for (Future<long[]> done : pool.invokeAll(workers)) {
+        long[] counts = done.get();
+        for (int p = 0; p < 3; p++) {
+          totals[p] += counts[p];
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A game thread failed", e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+    return new BatchResult(totals[0] + totals[1] + totals[2],
+        totals[1], totals[2], System.nanoTime() - start);
+  }
+
+  // plays games on one thread until the shared counter reaches the total
+  // returns how many games ended with no winner, and how many each player won
+  long[] work(long seed, AtomicLong next, long games) {
+    BridgItGame game = new BridgItGame(this.boardSize);
+    MoveStrategy playerOne = this.first.apply(seed);
+    MoveStrategy playerTwo = this.second.apply(seed);
+    long[] counts = new long[3];
+    while (true) {
+      long from = next.getAndAdd(BLOCK);
+      if (from >= games) {
+        return counts;
+      }
+      long to = Math.min(games, from + BLOCK);
+      for (long g = from; g < to; g++) {
+        game.reset();
+        counts[game.playOut(playerOne, playerTwo)] += 1;
+      }
+    }
+  }
+}
+
+// the outcome of a batch of games
+class BatchResult {
+  long games;
+  long playerOneWins;
+  long playerTwoWins;
+  long nanos;
+
+  // constructs the result of the given number of games
+  BatchResult(long games, long playerOneWins, long playerTwoWins, long nanos) {
+    this.games = games;
+    this.playerOneWins = playerOneWins;
+    this.playerTwoWins = playerTwoWins;
+    this.nanos = nanos;
+  }
+
+  // the share of the games the given player won
+  double winRate(int player) {
+    if (this.games == 0) {
+      return 0;
+    }
+    return (player == 1 ? this.playerOneWins : this.playerTwoWins) / (double) this.games;
+  }
+
+  // how many games were played per second
+  double gamesPerSecond() {
+    if (this.nanos == 0) {
+      return 0;
+    }
+    return this.games * 1e9 / this.nanos;
+  }
+
+  // a one line summary of the batch
+  public String toString() {
+    return String.format("%d games, player 1 won %.2f%%, player 2 won %.2f%%, %.0f games/sec",
+        this.games, this.winRate(1) * 100, this.winRate(2) * 100, this.gamesPerSecond());
+  }
+}
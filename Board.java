@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+
+import javalib.worldimages.*;
+
+// a compact board of size X size cells, stored as primitive arrays
+// owners holds the player of every cell (0 = nobody, 1 = player 1, 2 = player 2)
+// and each player also has a bitboard with one bit per cell they own
+// neighbors are found with index arithmetic instead of stored links
+class Board {
+  int size;
+  byte[] owners;
+  long[] player1;
+  long[] player2;
+  // counts the claims made on this board, so that views of it can tell when
+  // they are out of date
+  int version;
+  // the linked Cell view of this board, built the first time it is asked for
+  ArrayList<Cell> cells;
+  // the square grid of this board with BridgIt's goals, built the first time it is
+  // asked for and shared with copies
+  Topology topology;
+
+  // constructs a board with the starting pattern of the game
+  Board(int size) {
+    int count = size * size;
+    this.size = size;
+    this.owners = new byte[count];
+    this.player1 = new long[(count + 63) / 64];
+    this.player2 = new long[(count + 63) / 64];
+    this.cells = null;
+    this.topology = null;
+    this.reset();
+  }
+
+  // puts every cell back to the starting pattern of the game
+  void reset() {
+    for (int i = 0; i < this.owners.length; i++) {
+      int start = this.startOwner(i);
+      if (this.owners[i] != start) {
+        this.claim(i, start);
+      }
+    }
+  }
+
+  // the player who owns the cell at the given index at the start of the game:
+  // player 2 owns the cells with an odd x and even y,
+  // player 1 owns the cells with an even x and odd y
+  int startOwner(int index) {
+    int x = this.x(index);
+    int y = this.y(index);
+    if (x % 2 != 0 && y % 2 == 0) {
+      return 2;
+    }
+    else if (x % 2 == 0 && y % 2 != 0) {
+      return 1;
+    }
+    return 0;
+  }
+
+  // the number of cells on this board
+  int cellCount() {
+    return this.owners.length;
+  }
+
+  // the column of the cell at the given index
+  int x(int index) {
+    return index % this.size;
+  }
+
+  // the row of the cell at the given index
+  int y(int index) {
+    return index / this.size;
+  }
+
+  // the index of the cell in the given column and row
+  int index(int x, int y) {
+    return x + y * this.size;
+  }
+
+  // is the cell at the given index away from the border, where moves may be made
+  boolean interior(int index) {
+    int x = this.x(index);
+    int y = this.y(index);
+    return x > 0 && x < this.size - 1 && y > 0 && y < this.size - 1;
+  }
+
+  // can a player claim the cell at the given index
+  boolean playable(int index) {
+    return this.owners[index] == 0 && this.interior(index);
+  }
+
+  // the player who has taken the cell at the given index, or 0 for nobody
+  int owner(int index) {
+    return this.owners[index];
+  }
+
+  // has somebody taken the cell at the given index
+  boolean taken(int index) {
+    return this.owners[index] != 0;
+  }
+
+  // does the given player own the cell at the given index
+  // answered from that player's bitboard
+  boolean owns(int player, int index) {
+    long[] bits = this.bitsOf(player);
+    return bits != null && (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  // the number of cells the given player owns
+  int count(int player) {
+    long[] bits = this.bitsOf(player);
+    int result = 0;
+    for (long word : bits) {
+      result += Long.bitCount(word);
+    }
+    return result;
+  }
+
+  // the bitboard of the given player, or null for nobody
+  long[] bitsOf(int player) {
+    if (player == 1) {
+      return this.player1;
+    }
+    else if (player == 2) {
+      return this.player2;
+    }
+    else {
+      return null;
+    }
+  }
+
+  // gives the cell at the given index to the given player (0 clears it)
+  // keeps the bitboards and the Cell view, if it has been built, up to date
+  void claim(int index, int player) {
+    long[] before = this.bitsOf(this.owners[index]);
+    long[] after = this.bitsOf(player);
+    if (before != null) {
+      before[index >>> 6] &= ~(1L << index);
+    }
+    if (after != null) {
+      after[index >>> 6] |= 1L << index;
+    }
+    this.owners[index] = (byte) player;
+    this.version += 1;
+    if (this.cells != null) {
+      this.cells.get(index).player = player;
+    }
+  }
+
+  // a copy of this board that can be changed without changing this one
+  // the copy has no Cell view until one is asked for
+  Board copy() {
+    Board result = new Board(this.size);
+    System.arraycopy(this.owners, 0, result.owners, 0, this.owners.length);
+    System.arraycopy(this.player1, 0, result.player1, 0, this.player1.length);
+    System.arraycopy(this.player2, 0, result.player2, 0, this.player2.length);
+    result.topology = this.topology;
+    return result;
+  }
+
+  // the index of the neighbor of the given cell on the given side, or -1 if
+  // the cell is on that edge of the board
+  // sides are numbered clockwise from the top, the same order as Cell.iterator
+  int neighbor(int index, int side) {
+    if (side == 0) {
+      return index >= this.size ? index - this.size : -1;
+    }
+    else if (side == 1) {
+      return this.x(index) < this.size - 1 ? index + 1 : -1;
+    }
+    else if (side == 2) {
+      return index < this.owners.length - this.size ? index + this.size : -1;
+    }
+    else {
+      return this.x(index) > 0 ? index - 1 : -1;
+    }
+  }
+
+  // the shape of this board, for win detection and path searches
+  Topology topology() {
+    if (this.topology == null) {
+      this.topology = new RectTopology(this.size, this.size);
+    }
+    return this.topology;
+  }
+
+  // draws an image of the cell at the given index, the same as Cell.drawCell
+  WorldImage drawCell(int index) {
+    return new Cell(this.owner(index), this.x(index), this.y(index)).drawCell();
+  }
+
+  // the board as a list of linked Cells, built on first use and then kept in
+  // step with later claims
+  // the view is read only: changing a Cell's player does not change the board
+  ArrayList<Cell> cells() {
+    if (this.cells == null) {
+      this.cells = new CellGraphBuilder(this).build();
+    }
+    return this.cells;
+  }
+}
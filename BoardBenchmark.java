@@ -0,0 +1,51 @@
+// measures how long it takes to build boards as they grow
+// run with: java BoardBenchmark [sizes...]
+class BoardBenchmark {
+  int[] sizes;
+  int repeats;
+
+  // constructs a benchmark over the given board sizes
+  BoardBenchmark(int[] sizes, int repeats) {
+    this.sizes = sizes;
+    this.repeats = repeats;
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = {11, 51, 101, 201, 501, 1001};
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    new BoardBenchmark(sizes, 5).run();
+  }
+
+  // prints the best time of each construction method for every size
+  void run() {
+    System.out.println(String.format("%8s %12s %12s %12s %12s",
+        "size", "Board ms", "genBoard ms", "serial ms", "parallel ms"));
+    for (int size : this.sizes) {
+      BridgItWorld world = new BridgItWorld(size);
+      double board = this.bestMillis(() -> new Board(size));
+      double genBoard = this.bestMillis(() -> world.genBoard(size));
+      double serial = this.bestMillis(
+          () -> new CellGraphBuilder(new Board(size), Integer.MAX_VALUE, 16).build());
+      double parallel = this.bestMillis(
+          () -> new CellGraphBuilder(new Board(size), 0, 16).build());
+      System.out.println(String.format("%8d %12.3f %12.3f %12.3f %12.3f",
+          size, board, genBoard, serial, parallel));
+    }
+  }
+
+  // the fastest of several runs of the given construction, in milliseconds
+  double bestMillis(Runnable build) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < this.repeats; i++) {
+      long start = System.nanoTime();
+      build.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1e6;
+  }
+}
@@ -0,0 +1,286 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.ImageIO;
+
+import javalib.worldimages.*;
+
+// draws a board straight into pixels instead of building a tree of images
+// render fills an int[]-backed BufferedImage from the board's owners one run of
+// same-colored cells at a time, and copies each finished pixel row down the rest
+// of the cell's height, in the colors Cell.drawCell uses
+// picture keeps a ComputedPixelImage for a scene and repaints only changed cells,
+// filling each run of them in a row with a single rectangle
+class BoardRasterizer {
+  static final Color[] COLORS = {Color.WHITE, Color.PINK, Color.MAGENTA};
+
+  int cellSize;
+  int[] rgb;
+  BufferedImage image;
+  int[] pixels;
+  // the picture shown in scenes, and the owner of every cell painted in it,
+  // -1 for cells not painted yet
+  ComputedPixelImage picture;
+  byte[] painted;
+
+  // constructs a rasterizer that draws every cell as a square of the given size
+  BoardRasterizer(int cellSize) {
+    if (cellSize < 1) {
+      throw new IllegalArgumentException("A cell must be at least one pixel");
+    }
+    this.cellSize = cellSize;
+    this.rgb = new int[COLORS.length];
+    for (int i = 0; i < COLORS.length; i++) {
+      this.rgb[i] = COLORS[i].getRGB();
+    }
+    this.image = null;
+    this.picture = null;
+  }
+
+  // draws the given board into the image, which is reused while the board size
+  // stays the same
+  BufferedImage render(Board board) {
+    int width = board.size * this.cellSize;
+    if (this.image == null || this.image.getWidth() != width) {
+      this.image = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
+      this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+    }
+    for (int y = 0; y < board.size; y++) {
+      int row = y * this.cellSize * width;
+      int x = 0;
+      while (x < board.size) {
+        int owner = board.owners[board.index(x, y)];
+        int end = x + 1;
+        while (end < board.size && board.owners[board.index(end, y)] == owner) {
+          end += 1;
+        }
+        Arrays.fill(this.pixels, row + x * this.cellSize, row + end * this.cellSize,
+            this.rgb[owner]);
+        x = end;
+      }
+      for (int line = 1; line < this.cellSize; line++) {
+        System.arraycopy(this.pixels, row, this.pixels, row + line * width, width);
+      }
+    }
+    return this.image;
+  }
+
+  // writes the given board as a PNG file
+  void writePng(Board board, Path file) {
+    try {
+      ImageIO.write(this.render(board), "png", file.toFile());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // a single image of the given board that a scene can show
+  // the same image is kept between calls, and only the cells whose owner changed
+  // since the last call are painted again
+  WorldImage picture(Board board) {
+    int width = board.size * this.cellSize;
+    if (this.picture == null || this.painted.length != board.cellCount()) {
+      this.picture = new ComputedPixelImage(width, width);
+      this.painted = new byte[board.cellCount()];
+      Arrays.fill(this.painted, (byte) -1);
+    }
+    int i = Arrays.mismatch(this.painted, board.owners);
+    while (i != -1) {
+      int end = this.paint(board, i);
+      int next = Arrays.mismatch(this.painted, end, this.painted.length,
+          board.owners, end, board.owners.length);
+      i = next == -1 ? -1 : end + next;
+    }
+    return this.picture;
+  }
+
+  // paints the changed cell at the given index together with the changed cells of
+  // the same owner to its right, as one rectangle of the picture
+  // returns the index just past the last cell painted
+  int paint(Board board, int index) {
+    byte owner = board.owners[index];
+    int rowEnd = index - board.x(index) + board.size;
+    int end = index + 1;
+    while (end < rowEnd && board.owners[end] == owner && this.painted[end] != owner) {
+      end += 1;
+    }
+    this.picture.setPixels(board.x(index) * this.cellSize, board.y(index) * this.cellSize,
+        (end - index) * this.cellSize, this.cellSize, COLORS[owner]);
+    Arrays.fill(this.painted, index, end, owner);
+    return end;
+  }
+}
+
+// writes the final position of every replayed game as a PNG thumbnail while the
+// games are still being replayed
+// positions reach the threads, each with a rasterizer of its own, through a bounded
+// queue, so only a few of them are held at once however long the record is
+class PositionExporter implements GameVisitor {
+  // the positions the queue holds for each thread before replaying waits
+  static final int QUEUED_PER_THREAD = 4;
+
+  int cellSize;
+  int threads;
+  BridgItGame game;
+  // the directory being written to, and the positions no thread has taken yet,
+  // both null until the export is started
+  Path directory;
+  ArrayBlockingQueue<ExportedPosition> queue;
+  // the number of positions queued so far
+  int queued;
+  ExecutorService pool;
+  ArrayList<Future<Integer>> workers;
+  // the first error a thread ran into, after which positions are taken but no
+  // longer written
+  AtomicReference<RuntimeException> failure;
+
+  // constructs an exporter that draws cells of the given size on the given
+  // number of threads
+  PositionExporter(int cellSize, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("There must be at least one thread");
+    }
+    // fails early on a bad cell size
+    new BoardRasterizer(cellSize);
+    this.cellSize = cellSize;
+    this.threads = threads;
+    this.game = null;
+    this.directory = null;
+    this.queue = null;
+    this.pool = null;
+  }
+
+  // starts the threads that write positions to position-NNNNNN.png in the given
+  // directory, numbered in the order the games are replayed
+  void start(Path directory) {
+    if (this.pool != null) {
+      throw new IllegalStateException("The export has already been started");
+    }
+    this.directory = directory;
+    this.queue = new ArrayBlockingQueue<ExportedPosition>(this.threads * QUEUED_PER_THREAD);
+    this.queued = 0;
+    this.failure = new AtomicReference<RuntimeException>();
+    this.pool = Executors.newFixedThreadPool(this.threads);
+    this.workers = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < this.threads; i++) {
+      this.workers.add(this.pool.submit(() -> this.work()));
+    }
+  }
+
+  // sets up a board of the given size, reusing the last one when the size matches
+  public void startGame(int boardSize) {
+    if (this.game == null || this.game.boardSize != boardSize) {
+      this.game = new BridgItGame(boardSize);
+    }
+    else {
+      this.game.reset();
+    }
+  }
+
+  // replays the move
+  public void move(int index) {
+    this.game.play(index);
+  }
+
+  // queues a copy of the position the game ended in, waiting while the queue is full
+  public void endGame(boolean finished) {
+    if (this.pool == null) {
+      throw new IllegalStateException("The export has not been started");
+    }
+    try {
+      this.queue.put(new ExportedPosition(this.queued, this.game.board.copy()));
+      this.queued += 1;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // waits for every queued position to be written and stops the threads
+  // returns the number of files written
+  int finish() {
+    if (this.pool == null) {
+      throw new IllegalStateException("The export has not been started");
+    }
+    int written = 0;
+    try {
+      for (int i = 0; i < this.threads; i++) {
+        this.queue.put(ExportedPosition.END);
+      }
+      for (Future<Integer> done : this.workers) {
+        written += done.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("An export thread failed", e.getCause());
+    }
+    finally {
+      // interrupts threads still waiting on the queue if this one was interrupted
+      this.pool.shutdownNow();
+      this.pool = null;
+      this.queue = null;
+    }
+    if (this.failure.get() != null) {
+      throw new IllegalStateException("An export thread failed", this.failure.get());
+    }
+    return written;
+  }
+
+  // writes positions on one thread until it takes the end of the queue
+  // after an error on any thread, positions are still taken so that replaying
+  // never waits for a full queue
+  // returns how many this thread wrote
+  int work() {
+    BoardRasterizer rasterizer = new BoardRasterizer(this.cellSize);
+    int written = 0;
+    try {
+      ExportedPosition next = this.queue.take();
+      while (next != ExportedPosition.END) {
+        if (this.failure.get() == null) {
+          try {
+            rasterizer.writePng(next.board,
+                this.directory.resolve(String.format("position-%06d.png", next.number)));
+            written += 1;
+          }
+          catch (RuntimeException e) {
+            this.failure.compareAndSet(null, e);
+          }
+        }
+        next = this.queue.take();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return written;
+  }
+}
+
+// a position waiting to be exported, with its number in the order of the replay
+class ExportedPosition {
+  // the marker that tells a thread no more positions are coming
+  static final ExportedPosition END = new ExportedPosition(-1, null);
+
+  int number;
+  Board board;
+
+  ExportedPosition(int number, Board board) {
+    this.number = number;
+    this.board = board;
+  }
+}
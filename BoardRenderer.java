@@ -0,0 +1,120 @@
+import java.awt.Color;
+import java.util.Arrays;
+
+import javalib.impworld.*;
+import javalib.worldimages.*;
+
+// draws a board the same way BridgItWorld.drawBoard does, but keeps the image
+// between frames
+// the board image is a chain of overlays, one per cell in index order, and every
+// link of the chain is kept: when cells change, only the links from the first
+// changed cell onward are rebuilt, and all cells of a player share one image
+// the chain has to match drawBoard's link for link, so a link cannot be replaced
+// without rebuilding every link above it: a move at index i costs
+// cellCount - i new overlays, up to size^2 for a move near the top left. That is
+// fine for boards drawn whole at 50 pixels a cell; larger boards are drawn by
+// placeWindow or placeCells, which never build the chain
+class BoardRenderer {
+  Board board;
+  int dimension;
+  WorldImage background;
+  WorldImage[] cellImages;
+  // layers[i] is the board with cells 0 to i drawn on it
+  WorldImage[] layers;
+  // the owner of every cell when the layers were last brought up to date
+  byte[] drawn;
+  // the board's version when the layers were last brought up to date
+  int drawnVersion;
+  // the cell images at the size the last window was drawn at
+  WorldImage[] windowImages;
+  int windowCellSize;
+
+  // constructs a renderer for the given board, without drawing anything yet
+  BoardRenderer(Board board) {
+    this.board = board;
+    this.dimension = board.size * 50;
+    this.background = new RectangleImage(
+        this.dimension, this.dimension, OutlineMode.SOLID, Color.DARK_GRAY);
+    this.cellImages = new WorldImage[] {
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.WHITE),
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.PINK),
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.MAGENTA)};
+    this.layers = null;
+    this.drawn = null;
+    this.drawnVersion = -1;
+    this.windowImages = this.cellImages;
+    this.windowCellSize = 50;
+  }
+
+  // produces an image of the board as it is now, identical to drawBoard
+  WorldImage render() {
+    if (this.layers == null) {
+      this.layers = new WorldImage[this.board.cellCount()];
+      this.drawn = new byte[this.board.cellCount()];
+      this.redrawFrom(0);
+    }
+    else if (this.drawnVersion != this.board.version) {
+      int first = Arrays.mismatch(this.drawn, this.board.owners);
+      if (first != -1) {
+        this.redrawFrom(first);
+      }
+    }
+    this.drawnVersion = this.board.version;
+    return this.layers[this.layers.length - 1];
+  }
+
+  // rebuilds the layers from the given cell onward, one overlay per cell
+  void redrawFrom(int first) {
+    int offset = (this.dimension / 2) - 25;
+    for (int i = first; i < this.layers.length; i++) {
+      WorldImage below = i == 0 ? this.background : this.layers[i - 1];
+      this.drawn[i] = this.board.owners[i];
+      this.layers[i] = new OverlayOffsetAlign(
+          AlignModeX.CENTER,
+          AlignModeY.MIDDLE,
+          this.cellImages[this.drawn[i]],
+          offset - this.board.x(i) * 50,
+          offset - this.board.y(i) * 50,
+          below);
+    }
+  }
+
+  // places the background and then every cell straight onto the given scene
+  // the scene holds one image per cell side by side, so its depth stays the same
+  // however large the board is
+  void placeCells(WorldScene ws) {
+    ws.placeImageXY(this.background, this.dimension / 2, this.dimension / 2);
+    for (int i = 0; i < this.board.cellCount(); i++) {
+      ws.placeImageXY(
+          this.cellImages[this.board.owners[i]],
+          this.board.x(i) * 50 + 25,
+          this.board.y(i) * 50 + 25);
+    }
+  }
+
+  // places only the cells the given view can see onto the scene, at the view's zoom
+  // the work done depends on the size of the window, not the size of the board
+  void placeWindow(WorldScene ws, Viewport view) {
+    int cell = view.cellSize;
+    if (this.windowCellSize != cell) {
+      this.windowImages = new WorldImage[] {
+          new RectangleImage(cell, cell, OutlineMode.SOLID, Color.WHITE),
+          new RectangleImage(cell, cell, OutlineMode.SOLID, Color.PINK),
+          new RectangleImage(cell, cell, OutlineMode.SOLID, Color.MAGENTA)};
+      this.windowCellSize = cell;
+    }
+    int columns = view.columns();
+    int rows = view.rows();
+    ws.placeImageXY(new RectangleImage(columns * cell, rows * cell, OutlineMode.SOLID,
+        Color.DARK_GRAY), columns * cell / 2, rows * cell / 2);
+    for (int row = 0; row < rows; row++) {
+      int index = this.board.index(view.left, view.top + row);
+      for (int column = 0; column < columns; column++) {
+        ws.placeImageXY(
+            this.windowImages[this.board.owners[index + column]],
+            column * cell + cell / 2,
+            row * cell + cell / 2);
+      }
+    }
+  }
+}
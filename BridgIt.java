@@ -1,7 +1,27 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
 import java.util.function.BiFunction;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import tester.*;
 import javalib.impworld.*;
@@ -146,12 +166,18 @@ class SideIterator implements Iterator<Cell> {
 // enforces the rules of the game (no changing the cells on the border)
 class ValidMove implements BiFunction<Integer, BridgItWorld, Boolean> {
   public Boolean apply(Integer t, BridgItWorld u) {
-    Cell cell = u.board.get(t);
-    return cell.x > 0
-        && cell.x < u.boardSize - 1
-        && cell.y > 0
-        && cell.y < u.boardSize - 1;
+    return this.allows(u.board, t);
   } 
+  
+  // may a move be made on the cell at the given index of the given board
+  boolean allows(Board b, int index) {
+    int x = b.x(index);
+    int y = b.y(index);
+    return x > 0
+        && x < b.size - 1
+        && y > 0
+        && y < b.size - 1;
+  }
 }
 
 // is cell u at the top of the board of size t
@@ -159,6 +185,11 @@ class UpDirection implements BiFunction<Integer, Cell, Boolean> {
   public Boolean apply(Integer t, Cell u) {
     return u.y == 0;
   }
+  
+  // is the cell at the given index at the top of the board
+  boolean atEdge(Board b, int index) {
+    return b.y(index) == 0;
+  }
 }
 
 //is cell u at the bottom of the board of size t
@@ -166,6 +197,11 @@ class DownDirection implements BiFunction<Integer, Cell, Boolean> {
   public Boolean apply(Integer t, Cell u) {
     return u.y == t - 1;
   }
+  
+  // is the cell at the given index at the bottom of the board
+  boolean atEdge(Board b, int index) {
+    return b.y(index) == b.size - 1;
+  }
 }
 
 //is cell u at the right of the board of size t
@@ -173,6 +209,11 @@ class RightDirection implements BiFunction<Integer, Cell, Boolean> {
   public Boolean apply(Integer t, Cell u) {
     return u.x == t - 1;
   }
+  
+  // is the cell at the given index at the right of the board
+  boolean atEdge(Board b, int index) {
+    return b.x(index) == b.size - 1;
+  }
 }
 
 //is cell u at the left of the board of size t
@@ -180,6 +221,11 @@ class LeftDirection implements BiFunction<Integer, Cell, Boolean> {
   public Boolean apply(Integer t, Cell u) {
     return u.x == 0;
   }
+  
+  // is the cell at the given index at the left of the board
+  boolean atEdge(Board b, int index) {
+    return b.x(index) == 0;
+  }
 }
 
 
@@ -188,11 +234,50 @@ class LeftDirection implements BiFunction<Integer, Cell, Boolean> {
 class BridgItWorld extends World {
 
   int boardSize;
-  ArrayList<Cell> board;
+  // the rules engine the world plays through; board, wins and currentPlayer
+  // are the engine's, kept here for drawing and input
+  BridgItGame game;
+  Board board;
   int currentPlayer;
+  WinDetector wins;
+  BoardRenderer renderer;
+  // the part of the board the window shows, which is all of it unless the board is
+  // too large or the player has zoomed or panned
+  Viewport view;
+  // place each cell straight onto the scene instead of nesting one overlay per cell
+  // keeps the image tree shallow, which large boards need
+  boolean flatScene;
+  // draws the whole board as one picture of pixels when set, instead of an image
+  // per cell
+  BoardRasterizer rasterizer;
+  // counts the moves accepted, taken back and made again, and the changes to how
+  // the board is drawn
+  int version;
+  // the last scene made, and the world, board and view versions it was made at
+  // it is shown again as long as none of them has changed
+  WorldScene scene;
+  int sceneVersion;
+  int sceneBoardVersion;
+  int sceneViewVersion;
+  // the computer playing for each player, or null where a person clicks
+  // indexed by player, so index 0 is unused
+  AsyncMoveProvider[] computer;
+  // solved positions the computer plays from before it searches, or null
+  // the book's move is looked up once per position: bookMove is its answer for the
+  // position at bookVersion, which is -1 until there is one
+  Tablebase book;
+  int bookVersion;
+  int bookMove;
+  // marks the cells that would win at once for either player when set
+  boolean hints;
   
   // constructs an instance of the world
   BridgItWorld(int boardSize) {
+    this(boardSize, false);
+  }
+  
+  // constructs an instance of the world that draws its board flat or nested
+  BridgItWorld(int boardSize, boolean flatScene) {
     if (boardSize >= 3 && boardSize % 2 != 0) {
       this.boardSize = boardSize;
     }
@@ -200,13 +285,28 @@ class BridgItWorld extends World {
       throw new IllegalArgumentException(
           "Board size must be an odd number greater than 3");
     }
-    this.board = this.genBoard(boardSize);
-    this.currentPlayer = 1;
+    this.game = new BridgItGame(boardSize);
+    this.board = this.game.board;
+    this.currentPlayer = this.game.currentPlayer;
+    this.wins = this.game.wins;
+    this.renderer = new BoardRenderer(this.board);
+    this.view = new Viewport(boardSize);
+    this.flatScene = flatScene;
+    this.rasterizer = null;
+    this.version = 0;
+    this.scene = null;
+    this.computer = new AsyncMoveProvider[3];
+    this.book = null;
+    this.bookVersion = -1;
+    this.hints = false;
   }
   
   // generates a size X size board of cells which cyclically reference each other
   // cells are linked across the cardinal directions
+  // the world itself plays on a compact Board, this builds the linked Cell graph
   ArrayList<Cell> genBoard(int size) {
+    long start = Metrics.now();
+    long allocated = Metrics.allocated();
     ArrayList<Cell> result = new ArrayList<Cell>();
     
     for (int j = 0; j < size; j++) {
@@ -223,92 +323,336 @@ class BridgItWorld extends World {
       }
     }
     
-    return this.linkCells(result);
+    this.linkCells(result);
+    Metrics.GEN_BOARD.since(start);
+    Metrics.addAllocated(Metrics.GEN_BOARD_BYTES, allocated);
+    return result;
   }
   
   
   // takes a board as input and links the cells such that adjacent cells will reference each other 
   // e.g. two cells above/below each other will reference each other with this.top and this.bottom
+  // the board must be in row order, so each neighbor is found from the cell's index in one pass
   ArrayList<Cell> linkCells(ArrayList<Cell> b) {
-    for (Cell c : b) {
-      if (c.x != 0) {
-        c.setLeft(b.get(b.indexOf(c) - 1));
-      }
+    for (int i = 0; i < b.size(); i++) {
+      Cell c = b.get(i);
       if (c.x != this.boardSize - 1) {
-        c.setRight(b.get(b.indexOf(c) + 1));
-      }
-      if (c.y != 0) {
-        c.setTop(b.get(b.indexOf(c) - this.boardSize));
+        c.setRight(b.get(i + 1));
       }
       if (c.y != this.boardSize - 1) {
-        c.setBottom(b.get(b.indexOf(c) + this.boardSize));
+        c.setBottom(b.get(i + this.boardSize));
       }
     }
     return b;
   }
   
   // Produces a world image of the given board
-  WorldImage drawBoard(ArrayList<Cell> b) {
+  WorldImage drawBoard(Board b) {
+    long start = Metrics.now();
+    long allocated = Metrics.allocated();
     int dimension = this.boardSize * 50;
     WorldImage boardImage = new RectangleImage(
         dimension, 
         dimension, 
         OutlineMode.SOLID, 
         Color.DARK_GRAY);
-    for (Cell c : b) {
+    for (int i = 0; i < b.cellCount(); i++) {
       boardImage = new OverlayOffsetAlign(
           AlignModeX.CENTER, 
           AlignModeY.MIDDLE, 
-          c.drawCell(), 
-          ((dimension / 2) - 25) - c.x * 50,  
-          ((dimension / 2) - 25) - c.y * 50, 
+          b.drawCell(i), 
+          ((dimension / 2) - 25) - b.x(i) * 50,  
+          ((dimension / 2) - 25) - b.y(i) * 50, 
           boardImage);
     }
+    Metrics.DRAW_BOARD.since(start);
+    Metrics.addAllocated(Metrics.DRAW_BOARD_BYTES, allocated);
 
     return boardImage;
   }
   
   // handles mouse input for the game
-  // after each click, checks if a path has been created from the clicked cell
+  // the click is mapped through the view to the cell under it
+  // clicks are ignored while the computer is playing the current player
+  // after each click, checks if either player has connected their edges
+  // the three steps are timed apart in Metrics when metrics are on
   public void onMouseClicked(Posn pos) {
     
-    int x = (int) pos.x / 50;
-    int y = (int) pos.y / 50;
-    int index = x + (y * this.boardSize);
-    if (index >= 0 && index <= Math.pow(this.boardSize, 2)) {
-      if (new ValidMove().apply(index, this) 
-          && !this.board.get(index).taken()) {
-        this.board.get(index).player = this.currentPlayer;
-        this.currentPlayer = 3 - this.currentPlayer;
+    long start = Metrics.now();
+    int index = this.view.cellAt(pos);
+    boolean allowed = index != -1
+        && this.computer[this.currentPlayer] == null
+        && this.game.allows(index);
+    long validated = Metrics.CLICK_VALIDATE.since(start);
+    if (allowed) {
+      this.playAllowed(index);
+    }
+    long claimed = Metrics.CLICK_CLAIM.since(validated);
+    this.checkWin();
+    Metrics.CLICK_WIN_CHECK.since(claimed);
+
+  }
+  
+  // lets the computer move when it is playing the current player
+  // the computer thinks on a thread of its own, and a tick only checks whether
+  // its move is ready, so the world keeps drawing meanwhile
+  // a tick where a person is to move does nothing, so an idle game costs nothing
+  // a position the book knows a winning move in is played at once, without asking
+  // the strategy
+  public void onTick() {
+    AsyncMoveProvider provider = this.computer[this.currentPlayer];
+    if (provider != null && !this.wins.hasWon(1) && !this.wins.hasWon(2)) {
+      int index = this.bookMove();
+      if (index == -1) {
+        index = provider.poll(this.board, this.currentPlayer);
+      }
+      if (index == AsyncMoveProvider.THINKING) {
+        return;
+      }
+      if (index != -1) {
+        this.play(index);
+      }
+      this.checkWin();
+    }
+  }
+  
+  // gives the given player to the computer, or back to a person if strategy is null
+  // the computer has at most the given number of milliseconds for a move
+  void setComputer(int player, MoveStrategy strategy, long budgetMillis) {
+    if (player != 1 && player != 2) {
+      throw new IllegalArgumentException("Player must be 1 or 2");
+    }
+    if (this.computer[player] != null) {
+      this.computer[player].shutdown();
+    }
+    this.computer[player] = strategy == null ? null : new AsyncMoveProvider(strategy, budgetMillis);
+  }
+  
+  // gives the given player to the computer, with five seconds for a move
+  void setComputer(int player, MoveStrategy strategy) {
+    this.setComputer(player, strategy, 5000);
+  }
+  
+  // has the computer play from the given book of solved positions, or stop if the
+  // book is null
+  void setBook(Tablebase book) {
+    if (book != null && book.size != this.boardSize) {
+      throw new IllegalArgumentException("The book is for another board size");
+    }
+    this.book = book;
+    this.bookVersion = -1;
+  }
+
+  // the book's winning move in the current position, or -1 if there is no book or
+  // it does not know one
+  int bookMove() {
+    if (this.book == null) {
+      return -1;
+    }
+    if (this.bookVersion != this.version) {
+      this.bookMove = this.book.bestMove(this.game);
+      this.bookVersion = this.version;
+    }
+    return this.bookMove;
+  }
+  
+  // marks the cells that would win at once, in the color of the player they would
+  // win for, or stops marking them if hints is false
+  void setHints(boolean hints) {
+    this.hints = hints;
+    if (hints) {
+      this.game.threats();
+    }
+    this.version += 1;
+  }
+  
+  // draws the board as one picture of pixels, or as images again if rasterized is
+  // false
+  void setRasterized(boolean rasterized) {
+    this.rasterizer = rasterized ? new BoardRasterizer(50) : null;
+    this.version += 1;
+  }
+  
+  // claims the cell at the given index for the current player and passes the turn,
+  // if the move is allowed
+  // returns whether the move was made
+  boolean play(int index) {
+    boolean moved = this.game.play(index);
+    this.currentPlayer = this.game.currentPlayer;
+    if (moved) {
+      this.version += 1;
+    }
+    return moved;
+  }
+  
+  // makes a move that the game's allows has already accepted
+  void playAllowed(int index) {
+    this.game.playAllowed(index);
+    this.currentPlayer = this.game.currentPlayer;
+    this.version += 1;
+  }
+  
+  // takes back the last move, and then any computer moves before it, so that
+  // a person is to move again
+  // returns whether any move was taken back
+  boolean undo() {
+    boolean undone = this.game.undo();
+    while (undone && this.computer[this.game.currentPlayer] != null && this.game.undo()) {
+      // keep going back to a person's turn
+    }
+    this.currentPlayer = this.game.currentPlayer;
+    if (undone) {
+      this.version += 1;
+    }
+    return undone;
+  }
+  
+  // makes the last move taken back again, and then the computer moves after it
+  // returns whether any move was made again
+  boolean redo() {
+    boolean redone = this.game.redo();
+    while (redone && this.computer[this.game.currentPlayer] != null && this.game.redo()) {
+      // keep going forward to a person's turn
+    }
+    this.currentPlayer = this.game.currentPlayer;
+    if (redone) {
+      this.version += 1;
+    }
+    return redone;
+  }
+  
+  // a right click centers the view on the cell under it, any other click plays
+  public void onMouseClicked(Posn pos, String buttonName) {
+    if (buttonName.equals("RightButton")) {
+      int index = this.view.cellAt(pos);
+      if (index != -1) {
+        this.view.centerOn(this.board.x(index), this.board.y(index));
       }
     }
-    if (this.board.get(index).hasPath(
-        boardSize, new ArrayList<Cell>(), new LeftDirection())
-        && this.board.get(index).hasPath(
-            boardSize, new ArrayList<Cell>(), new RightDirection())) {
+    else {
+      this.onMouseClicked(pos);
+    }
+  }
+  
+  // "u" takes back the last move and "r" makes it again
+  // "+" and "-" zoom in and out, the arrow keys pan by a quarter of the window,
+  // and "0" shows the board as it started
+  public void onKeyEvent(String key) {
+    int stepX = Math.max(1, this.view.width / this.view.cellSize / 4);
+    int stepY = Math.max(1, this.view.height / this.view.cellSize / 4);
+    if (key.equals("u")) {
+      this.undo();
+    }
+    else if (key.equals("r")) {
+      this.redo();
+      this.checkWin();
+    }
+    else if (key.equals("+") || key.equals("=")) {
+      this.view.zoomBy(1);
+    }
+    else if (key.equals("-")) {
+      this.view.zoomBy(-1);
+    }
+    else if (key.equals("left")) {
+      this.view.panBy(-stepX, 0);
+    }
+    else if (key.equals("right")) {
+      this.view.panBy(stepX, 0);
+    }
+    else if (key.equals("up")) {
+      this.view.panBy(0, -stepY);
+    }
+    else if (key.equals("down")) {
+      this.view.panBy(0, stepY);
+    }
+    else if (key.equals("0")) {
+      this.view.reset();
+    }
+  }
+  
+  // ends the game if either player has connected their edges
+  // a game being recorded is written out before the world ends
+  void checkWin() {
+    if (this.wins.hasWon(1)) {
+      this.game.endRecording();
       this.endOfWorld("Player 1 Wins!");
     }
-    else if (this.board.get(index).hasPath(
-        boardSize, new ArrayList<Cell>(), new UpDirection())
-        && this.board.get(index).hasPath(
-            boardSize, new ArrayList<Cell>(), new DownDirection())) {
+    else if (this.wins.hasWon(2)) {
+      this.game.endRecording();
       this.endOfWorld("Player 2 Wins!");
     }
-
   }
   
   
   // creates the world scene for the bridgit world
+  // the last scene is returned as it is when nothing has changed since it was made
+  // the board image is kept by the renderer and only redrawn where cells changed
+  // when the view shows part of the board, only the cells in it are drawn
+  // its time, and the bytes a new scene takes, go to Metrics when metrics are on
   public WorldScene makeScene() {
-    WorldScene ws = new WorldScene(50 * this.boardSize, 50 * this.boardSize);
-    ws.placeImageXY(this.drawBoard(this.board), this.boardSize * 25, this.boardSize * 25);
+    long start = Metrics.now();
+    if (this.scene != null
+        && this.sceneVersion == this.version
+        && this.sceneBoardVersion == this.board.version
+        && this.sceneViewVersion == this.view.version) {
+      if (Metrics.enabled) {
+        Metrics.SCENES_CACHED.increment();
+        Metrics.MAKE_SCENE.since(start);
+      }
+      return this.scene;
+    }
+    long allocated = Metrics.allocated();
+    WorldScene ws = new WorldScene(this.view.width, this.view.height);
+    if (!this.view.showsWholeBoard()) {
+      this.renderer.placeWindow(ws, this.view);
+    }
+    else if (this.rasterizer != null) {
+      ws.placeImageXY(this.rasterizer.picture(this.board), this.boardSize * 25,
+          this.boardSize * 25);
+    }
+    else if (this.flatScene) {
+      this.renderer.placeCells(ws);
+    }
+    else {
+      ws.placeImageXY(this.renderer.render(), this.boardSize * 25, this.boardSize * 25);
+    }
+    if (this.hints) {
+      this.placeHints(ws);
+    }
+    this.scene = ws;
+    this.sceneVersion = this.version;
+    this.sceneBoardVersion = this.board.version;
+    this.sceneViewVersion = this.view.version;
+    Metrics.MAKE_SCENE.since(start);
+    Metrics.addAllocated(Metrics.SCENE_BYTES, allocated);
     return ws;
   }
   
+  // places a dot on every cell in the view that would win at once for a player
+  // the cells are read straight from the game's threat tracker, so this costs
+  // nothing per cell that is not a threat
+  void placeHints(WorldScene ws) {
+    ThreatTracker threats = this.game.threats();
+    for (int player = 1; player <= 2; player++) {
+      Color color = player == 1 ? Color.PINK : Color.MAGENTA;
+      int[] cells = threats.members[player];
+      for (int i = 0; i < threats.count(player); i++) {
+        int x = this.board.x(cells[i]) - this.view.left;
+        int y = this.board.y(cells[i]) - this.view.top;
+        if (x >= 0 && x < this.view.columns() && y >= 0 && y < this.view.rows()) {
+          ws.placeImageXY(new CircleImage(Math.max(1, this.view.cellSize / 5),
+              OutlineMode.SOLID, color),
+              x * this.view.cellSize + this.view.cellSize / 2,
+              y * this.view.cellSize + this.view.cellSize / 2);
+        }
+      }
+    }
+  }
+  
   // draws the ending scene
   public WorldScene lastScene(String msg) {
-    WorldScene ws = new WorldScene(50 * this.boardSize, 50 * this.boardSize);
-    ws.placeImageXY(new TextImage(msg, Color.BLACK), this.boardSize * 25, this.boardSize * 25);
+    WorldScene ws = new WorldScene(this.view.width, this.view.height);
+    ws.placeImageXY(new TextImage(msg, Color.BLACK), this.view.width / 2, this.view.height / 2);
     return ws;
   }
 }
@@ -600,6 +944,71 @@ class ExamplesBridgIt {
     t.checkExpect(world1.makeScene(), ws);
   }
   
+  void testBoardRenderer(Tester t) {
+    BridgItWorld world = new BridgItWorld(5);
+    BoardRenderer renderer = new BoardRenderer(world.board);
+    t.checkExpect(renderer.render(), world.drawBoard(world.board));
+    
+    // nothing changed, so the same image comes back
+    WorldImage first = renderer.render();
+    t.checkExpect(renderer.render() == first, true);
+    
+    // only the layers from the changed cell onward are rebuilt
+    WorldImage beforeChange = renderer.layers[11];
+    world.board.claim(12, 1);
+    t.checkExpect(renderer.render(), world.drawBoard(world.board));
+    t.checkExpect(renderer.layers[11] == beforeChange, true);
+    t.checkExpect(renderer.render() == first, false);
+    
+    // every cell of a player shares one image
+    world.board.claim(6, 2);
+    renderer.render();
+    t.checkExpect(renderer.cellImages[2],
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.MAGENTA));
+    t.checkExpect(renderer.render(), world.drawBoard(world.board));
+  }
+  
+  void testingFlatMakeScene(Tester t) {
+    BridgItWorld world1 = new BridgItWorld(3, true);
+    WorldImage white = new RectangleImage(50, 50, OutlineMode.SOLID, Color.WHITE);
+    WorldImage pink = new RectangleImage(50, 50, OutlineMode.SOLID, Color.PINK);
+    WorldImage magenta = new RectangleImage(50, 50, OutlineMode.SOLID, Color.MAGENTA);
+    
+    WorldScene ws = new WorldScene(150, 150);
+    ws.placeImageXY(new RectangleImage(150, 150, OutlineMode.SOLID, Color.DARK_GRAY), 75, 75);
+    ws.placeImageXY(white, 25, 25);
+    ws.placeImageXY(magenta, 75, 25);
+    ws.placeImageXY(white, 125, 25);
+    ws.placeImageXY(pink, 25, 75);
+    ws.placeImageXY(white, 75, 75);
+    ws.placeImageXY(pink, 125, 75);
+    ws.placeImageXY(white, 25, 125);
+    ws.placeImageXY(magenta, 75, 125);
+    ws.placeImageXY(white, 125, 125);
+    t.checkExpect(world1.makeScene(), ws);
+    
+    world1.onMouseClicked(new Posn(75, 75));
+    WorldScene ws2 = new WorldScene(150, 150);
+    ws2.placeImageXY(new RectangleImage(150, 150, OutlineMode.SOLID, Color.DARK_GRAY), 75, 75);
+    ws2.placeImageXY(white, 25, 25);
+    ws2.placeImageXY(magenta, 75, 25);
+    ws2.placeImageXY(white, 125, 25);
+    ws2.placeImageXY(pink, 25, 75);
+    ws2.placeImageXY(pink, 75, 75);
+    ws2.placeImageXY(pink, 125, 75);
+    ws2.placeImageXY(white, 25, 125);
+    ws2.placeImageXY(magenta, 75, 125);
+    ws2.placeImageXY(white, 125, 125);
+    t.checkExpect(world1.makeScene(), ws2);
+    
+    // the nested scene of the same position places one image holding every cell
+    BridgItWorld world2 = new BridgItWorld(3);
+    world2.onMouseClicked(new Posn(75, 75));
+    WorldScene ws3 = new WorldScene(150, 150);
+    ws3.placeImageXY(world2.drawBoard(world2.board), 75, 75);
+    t.checkExpect(world2.makeScene(), ws3);
+  }
+  
   void testValidMove(Tester t) {
     BridgItWorld world = new BridgItWorld(3);
     ArrayList<Cell> linkedBoard = new ArrayList<Cell>();
@@ -666,8 +1075,1924 @@ class ExamplesBridgIt {
     
   }
   
+  void testBoard(Tester t) {
+    Board board = new Board(3);
+    t.checkExpect(board.cellCount(), 9);
+    t.checkExpect(board.owners, new byte[] {0, 2, 0, 1, 0, 1, 0, 2, 0});
+    t.checkExpect(board.x(5), 2);
+    t.checkExpect(board.y(5), 1);
+    t.checkExpect(board.index(2, 1), 5);
+    t.checkExpect(board.owns(1, 3), true);
+    t.checkExpect(board.owns(2, 3), false);
+    t.checkExpect(board.count(1), 2);
+    t.checkExpect(board.count(2), 2);
+    
+    t.checkExpect(board.neighbor(4, 0), 1);
+    t.checkExpect(board.neighbor(4, 1), 5);
+    t.checkExpect(board.neighbor(4, 2), 7);
+    t.checkExpect(board.neighbor(4, 3), 3);
+    t.checkExpect(board.neighbor(0, 0), -1);
+    t.checkExpect(board.neighbor(2, 1), -1);
+    t.checkExpect(board.neighbor(8, 2), -1);
+    t.checkExpect(board.neighbor(3, 3), -1);
+    
+    t.checkExpect(board.taken(4), false);
+    board.claim(4, 1);
+    t.checkExpect(board.taken(4), true);
+    t.checkExpect(board.owner(4), 1);
+    t.checkExpect(board.owns(1, 4), true);
+    t.checkExpect(board.count(1), 3);
+    board.claim(4, 0);
+    t.checkExpect(board.owns(1, 4), false);
+    t.checkExpect(board.count(1), 2);
+    
+    // the Cell view is the same graph genBoard builds, and follows later claims
+    t.checkExpect(board.cells(), new BridgItWorld(3).genBoard(3));
+    board.claim(4, 2);
+    t.checkExpect(board.cells().get(4).player, 2);
+    t.checkExpect(board.drawCell(4), new RectangleImage(50, 50, OutlineMode.SOLID, Color.MAGENTA));
+    
+    // bitboards span several words on larger boards
+    Board big = new Board(11);
+    big.claim(100, 1);
+    t.checkExpect(big.owns(1, 100), true);
+    t.checkExpect(big.owns(2, 100), false);
+    t.checkExpect(big.count(1), 31);
+  }
+  
+  void testCellGraphBuilder(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "A band must have at least one row"), "CellGraphBuilder", new Board(3), 0, 0);
+    
+    t.checkExpect(new CellGraphBuilder(new Board(3)).build(), new BridgItWorld(3).genBoard(3));
+    
+    // forcing the fork-join path with one-row bands builds the same graph
+    Board board = new Board(21);
+    board.claim(22, 1);
+    board.claim(430, 2);
+    ArrayList<Cell> sequential = new CellGraphBuilder(board).build();
+    ArrayList<Cell> parallel = new CellGraphBuilder(board, 0, 1).build();
+    t.checkExpect(parallel, sequential);
+    t.checkExpect(parallel.get(22).player, 1);
+    t.checkExpect(parallel.get(430).player, 2);
+    t.checkExpect(parallel.get(22).right, parallel.get(23));
+    t.checkExpect(parallel.get(22).bottom, parallel.get(43));
+    t.checkExpect(parallel.get(42).top, parallel.get(21));
+  }
+  
+  void testPathSearch(Tester t) {
+    BridgItWorld world = new BridgItWorld(3);
+    PathSearch search = new PathSearch(world.board);
+    t.checkExpect(search.hasPath(7, i -> i / 3 == 0), false);
+    t.checkExpect(search.hasPath(3, i -> i % 3 == 2), false);
+    
+    world.board.claim(4, 1);
+    t.checkExpect(search.hasPath(3, i -> i % 3 == 2), true);
+    t.checkExpect(search.hasPath(7, i -> i / 3 == 0), false);
+    
+    // random games on a larger board give the same answers as Cell.hasPath
+    BridgItWorld world2 = new BridgItWorld(11);
+    PathSearch search2 = new PathSearch(world2.board);
+    Random rand = new Random(7);
+    int player = 1;
+    for (int move = 0; move < 30; move++) {
+      int index = rand.nextInt(121);
+      if (new ValidMove().apply(index, world2) && !world2.board.taken(index)) {
+        world2.board.claim(index, player);
+        player = 3 - player;
+      }
+    }
+    boolean allSame = true;
+    for (int i = 0; i < 121; i++) {
+      Cell c = world2.board.cells().get(i);
+      allSame = allSame
+          && search2.hasPath(i, j -> j % 11 == 0)
+              == c.hasPath(11, new ArrayList<Cell>(), new LeftDirection())
+          && search2.hasPath(i, j -> j % 11 == 10)
+              == c.hasPath(11, new ArrayList<Cell>(), new RightDirection())
+          && search2.hasPath(i, j -> j / 11 == 0)
+              == c.hasPath(11, new ArrayList<Cell>(), new UpDirection())
+          && search2.hasPath(i, j -> j / 11 == 10)
+              == c.hasPath(11, new ArrayList<Cell>(), new DownDirection());
+    }
+    t.checkExpect(allSame, true);
+  }
+  
+  void testTopology(Tester t) {
+    // a 3 X 2 grid, where goals are the outer columns and rows
+    Topology rect = new RectTopology(3, 2);
+    t.checkExpect(rect.cellCount(), 6);
+    t.checkExpect(rect.degree, 4);
+    t.checkExpect(rect.neighbor(0, 0), -1);
+    t.checkExpect(rect.neighbor(0, 1), 1);
+    t.checkExpect(rect.neighbor(0, 2), 3);
+    t.checkExpect(rect.neighbor(0, 3), -1);
+    t.checkExpect(rect.neighbor(5, 0), 2);
+    t.checkExpect(rect.neighbor(5, 1), -1);
+    t.checkExpect(rect.goal(1, 0).test(3), true);
+    t.checkExpect(rect.goal(1, 1).test(3), false);
+    t.checkExpect(rect.goal(2, 1).test(4), true);
+    t.checkExpect(rect.goal(2, 0).test(4), false);
+    t.checkExpect(rect.goal(1, 0) == rect.goal(1, 0), true);
+    
+    // the same neighbors as Board on the standard board
+    Board board = new Board(5);
+    boolean same = true;
+    for (int i = 0; i < 25; i++) {
+      for (int side = 0; side < 4; side++) {
+        same = same && board.topology().neighbor(i, side) == board.neighbor(i, side);
+      }
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(board.copy().topology == board.topology(), true);
+    
+    // the six neighbors of the middle of a hex board, clockwise from the upper left
+    Topology hex = new HexTopology(3, 3);
+    t.checkExpect(hex.degree, 6);
+    int[] around = new int[6];
+    for (int side = 0; side < 6; side++) {
+      around[side] = hex.neighbor(4, side);
+    }
+    t.checkExpect(around, new int[] {1, 2, 5, 7, 6, 3});
+    t.checkExpect(hex.neighbor(0, 3), 3);
+    t.checkExpect(hex.neighbor(0, 4), -1);
+    
+    // goals can be any cells
+    rect.setGoal(2, 0, i -> i == 0);
+    t.checkExpect(rect.goal(2, 0).test(0), true);
+    t.checkExpect(rect.goal(2, 0).test(1), false);
+    t.checkExpect(rect.atGoal(2, 0), true);
+    
+    t.checkConstructorException(new IllegalArgumentException(
+        "A board must have at least one cell"), "RectTopology", 0, 3);
+    Topology plain = new Topology(2, 2, RectTopology.DX, RectTopology.DY);
+    t.checkException(new IllegalArgumentException("Player must be 1 or 2"),
+        plain, "goal", 3, 0);
+    t.checkException(new IllegalArgumentException("A goal has ends 0 and 1"),
+        plain, "goal", 1, 2);
+  }
+  
+  void testTopologyBoard(Tester t) {
+    // a diagonal joins left to right on hexagons but not on squares
+    TopologyBoard hex = new TopologyBoard(new HexTopology(3, 3));
+    TopologyBoard square = new TopologyBoard(new RectTopology(3, 3));
+    for (int index : new int[] {6, 4, 2}) {
+      hex.claim(index, 1);
+      square.claim(index, 1);
+    }
+    t.checkExpect(hex.winner(), 1);
+    t.checkExpect(square.winner(), 0);
+    t.checkExpect(hex.claim(4, 2), false);
+    t.checkExpect(hex.claim(9, 2), false);
+    t.checkExpect(hex.claims, 3);
+    t.checkException(new IllegalArgumentException("Player must be 1 or 2"),
+        hex, "claim", 0, 0);
+    
+    // a wide rectangle is crossed top to bottom in two cells
+    TopologyBoard wide = new TopologyBoard(new RectTopology(7, 2));
+    wide.claim(3, 2);
+    t.checkExpect(wide.winner(), 0);
+    wide.claim(10, 2);
+    t.checkExpect(wide.winner(), 2);
+    
+    // custom goals: player 1 joins two corners of a hex board
+    Topology corners = new HexTopology(4, 4);
+    corners.setGoal(1, 0, i -> i == 0);
+    corners.setGoal(1, 1, i -> i == 15);
+    TopologyBoard race = new TopologyBoard(corners);
+    for (int index : new int[] {0, 4, 8, 12, 13, 14}) {
+      race.claim(index, 1);
+    }
+    t.checkExpect(race.winner(), 0);
+    race.claim(15, 1);
+    t.checkExpect(race.winner(), 1);
+    
+    // searches run on the same shapes, with the goals as their targets
+    PathSearch search = new PathSearch(hex.owners, hex.topology);
+    t.checkExpect(search.hasPath(6, hex.topology.goal(1, 1)), true);
+    t.checkExpect(new PathSearch(square.owners, square.topology)
+        .hasPath(6, square.topology.goal(1, 1)), false);
+    t.checkConstructorException(new IllegalArgumentException(
+        "There must be one owner per cell"), "WinDetector", new byte[3], corners);
+    t.checkConstructorException(new IllegalArgumentException(
+        "There must be one owner per cell"), "PathSearch", new byte[3], corners);
+  }
+  
+  void testUnionFind(Tester t) {
+    UnionFind sets = new UnionFind(5);
+    t.checkExpect(sets.connected(0, 1), false);
+    t.checkExpect(sets.find(3), 3);
+    
+    sets.union(0, 1);
+    sets.union(3, 4);
+    t.checkExpect(sets.connected(0, 1), true);
+    t.checkExpect(sets.connected(1, 3), false);
+    
+    sets.union(1, 4);
+    t.checkExpect(sets.connected(0, 3), true);
+    t.checkExpect(sets.connected(2, 3), false);
+  }
+  
+  void testWinDetector(Tester t) {
+    BridgItWorld world = new BridgItWorld(3);
+    t.checkExpect(world.wins.hasWon(1), false);
+    t.checkExpect(world.wins.hasWon(2), false);
+    
+    world.board.claim(4, 2);
+    world.wins.claim(4);
+    t.checkExpect(world.wins.hasWon(1), false);
+    t.checkExpect(world.wins.hasWon(2), true);
+    
+    // a detector built from a board that is already played agrees
+    t.checkExpect(new WinDetector(world.board).hasWon(2), true);
+    
+    // player 1 bends down through the middle of a 5x5 board
+    // while player 2 blocks the top row
+    BridgItWorld world2 = new BridgItWorld(5);
+    int[] moves = {6, 8, 12, 16};
+    int player = 1;
+    for (int i : moves) {
+      world2.board.claim(i, player);
+      world2.wins.claim(i);
+      player = 3 - player;
+    }
+    
+    // Cell.hasPath is the reference for which edges are connected
+    t.checkExpect(world2.wins.hasWon(1),
+        world2.board.cells().get(5).hasPath(5, new ArrayList<Cell>(), new RightDirection())
+        || world2.board.cells().get(15).hasPath(5, new ArrayList<Cell>(), new RightDirection()));
+    t.checkExpect(world2.wins.hasWon(2),
+        world2.board.cells().get(1).hasPath(5, new ArrayList<Cell>(), new DownDirection())
+        || world2.board.cells().get(3).hasPath(5, new ArrayList<Cell>(), new DownDirection()));
+    t.checkExpect(world2.wins.hasWon(1), false);
+    
+    world2.board.claim(18, 1);
+    world2.wins.claim(18);
+    t.checkExpect(world2.board.cells().get(5).hasPath(5, new ArrayList<Cell>(), new RightDirection()),
+        true);
+    t.checkExpect(world2.wins.hasWon(1), true);
+    t.checkExpect(world2.wins.hasWon(2), false);
+  }
+  
+  void testOnMouseClicked(Tester t) {
+    BridgItWorld world = new BridgItWorld(5);
+    
+    // clicking the border does nothing
+    world.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(world.board.owner(0), 0);
+    t.checkExpect(world.currentPlayer, 1);
+    
+    world.onMouseClicked(new Posn(60, 60));
+    t.checkExpect(world.board.owner(6), 1);
+    t.checkExpect(world.currentPlayer, 2);
+    
+    // clicking a taken cell does nothing
+    world.onMouseClicked(new Posn(60, 60));
+    t.checkExpect(world.board.owner(6), 1);
+    t.checkExpect(world.currentPlayer, 2);
+    
+    world.onMouseClicked(new Posn(160, 60));
+    world.onMouseClicked(new Posn(110, 110));
+    world.onMouseClicked(new Posn(60, 160));
+    t.checkExpect(world.wins.hasWon(1), false);
+    t.checkExpect(world.wins.hasWon(2), false);
+    world.onMouseClicked(new Posn(160, 160));
+    t.checkExpect(world.wins.hasWon(1), true);
+    t.checkExpect(world.wins.hasWon(2), false);
+  }
+  
+  void testingDirectionsOnBoard(Tester t) {
+    Board board = new Board(3);
+    
+    t.checkExpect(new UpDirection().atEdge(board, 4), false);
+    t.checkExpect(new DownDirection().atEdge(board, 4), false);
+    t.checkExpect(new LeftDirection().atEdge(board, 4), false);
+    t.checkExpect(new RightDirection().atEdge(board, 4), false);
+    
+    t.checkExpect(new UpDirection().atEdge(board, 0), true);
+    t.checkExpect(new DownDirection().atEdge(board, 0), false);
+    t.checkExpect(new LeftDirection().atEdge(board, 0), true);
+    t.checkExpect(new RightDirection().atEdge(board, 0), false);
+    
+    t.checkExpect(new UpDirection().atEdge(board, 8), false);
+    t.checkExpect(new DownDirection().atEdge(board, 8), true);
+    t.checkExpect(new LeftDirection().atEdge(board, 8), false);
+    t.checkExpect(new RightDirection().atEdge(board, 8), true);
+  }
+  
+  void testBridgItGame(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "Board size must be an odd number greater than 3"), "BridgItGame", 6);
+    BridgItGame game = new BridgItGame(5);
+    t.checkExpect(game.winner(), 0);
+    t.checkExpect(game.play(0), false);
+    t.checkExpect(game.play(-1), false);
+    t.checkExpect(game.play(25), false);
+    t.checkExpect(game.play(6), true);
+    t.checkExpect(game.play(6), false);
+    t.checkExpect(game.currentPlayer, 2);
+    game.play(8);
+    game.play(12);
+    game.play(16);
+    t.checkExpect(game.winner(), 0);
+    game.play(18);
+    t.checkExpect(game.winner(), 1);
+    
+    game.reset();
+    t.checkExpect(game.board.owners, new Board(5).owners);
+    t.checkExpect(game.winner(), 0);
+    t.checkExpect(game.currentPlayer, 1);
+    
+    // two strategies always play to a winner
+    int winner = game.playOut(new RandomStrategy(1), new RandomStrategy(2));
+    t.checkExpect(winner == 1 || winner == 2, true);
+    t.checkExpect(game.winner(), winner);
+    
+    // the perfect solver wins every game as player 1
+    game.reset();
+    t.checkExpect(game.playOut(new SpanningTreeSolver(1), new RandomStrategy(3)), 1);
+  }
+  
+  void testRandomStrategy(Tester t) {
+    Board board = new Board(5);
+    RandomStrategy random = new RandomStrategy(4);
+    t.checkExpect(board.playable(random.chooseMove(board, 1)), true);
+    board.claim(6, 1);
+    board.claim(8, 2);
+    board.claim(12, 1);
+    board.claim(16, 2);
+    t.checkExpect(random.chooseMove(board, 1), 18);
+    board.claim(18, 1);
+    t.checkExpect(random.chooseMove(board, 2), -1);
+  }
+  
+  void testBatchRunner(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "There must be at least one thread"), "BatchRunner", 11, null, null, 0);
+    BatchRunner runner = new BatchRunner(11,
+        seed -> new RandomStrategy(seed), seed -> new RandomStrategy(~seed), 2);
+    BatchResult result = runner.run(1000);
+    t.checkExpect(result.games, 1000L);
+    t.checkExpect(result.playerOneWins + result.playerTwoWins, 1000L);
+    t.checkExpect(result.gamesPerSecond() > 0, true);
+    t.checkInexact(result.winRate(1) + result.winRate(2), 1.0, 0.001);
+    
+    BatchRunner perfect = new BatchRunner(7,
+        seed -> new SpanningTreeSolver(1), seed -> new RandomStrategy(seed), 1);
+    t.checkExpect(perfect.run(50).winRate(1), 1.0);
+  }
+  
+  void testRollbackUnionFind(Tester t) {
+    RollbackUnionFind sets = new RollbackUnionFind(5);
+    int start = sets.mark();
+    sets.union(0, 1);
+    int middle = sets.mark();
+    sets.union(2, 3);
+    sets.union(1, 3);
+    t.checkExpect(sets.connected(0, 2), true);
+    sets.rollback(middle);
+    t.checkExpect(sets.connected(0, 1), true);
+    t.checkExpect(sets.connected(0, 2), false);
+    t.checkExpect(sets.connected(2, 3), false);
+    sets.rollback(start);
+    t.checkExpect(sets.parent, new int[] {0, 1, 2, 3, 4});
+    t.checkExpect(sets.rank, new byte[5]);
+    
+    // the history grows past its first size
+    for (int i = 0; i < 40; i++) {
+      sets.union(i % 5, (i + 1) % 5);
+    }
+    t.checkExpect(sets.connected(0, 4), true);
+    sets.rollback(start);
+    t.checkExpect(sets.connected(0, 4), false);
+  }
+  
+  void testUndoRedo(Tester t) {
+    BridgItGame game = new BridgItGame(5);
+    t.checkExpect(game.undo(), false);
+    t.checkExpect(game.redo(), false);
+    game.play(6);
+    game.play(8);
+    game.play(12);
+    game.play(16);
+    game.play(18);
+    t.checkExpect(game.winner(), 1);
+    
+    // undoing the winning move takes the win back
+    t.checkExpect(game.undo(), true);
+    t.checkExpect(game.winner(), 0);
+    t.checkExpect(game.board.taken(18), false);
+    t.checkExpect(game.currentPlayer, 1);
+    t.checkExpect(game.redo(), true);
+    t.checkExpect(game.winner(), 1);
+    t.checkExpect(game.redo(), false);
+    
+    // back to the start leaves the board as it was
+    while (game.undo()) {
+      // take everything back
+    }
+    t.checkExpect(game.board.owners, new Board(5).owners);
+    t.checkExpect(game.currentPlayer, 1);
+    t.checkExpect(game.redo(), true);
+    t.checkExpect(game.board.owner(6), 1);
+    
+    // a new move forgets what could have been redone
+    game.play(12);
+    t.checkExpect(game.redo(), false);
+    t.checkExpect(game.moveCount, 2);
+    
+    // a random game taken back and played again ends the same way
+    BridgItGame random = new BridgItGame(9);
+    int winner = random.playOut(new RandomStrategy(4), new RandomStrategy(5));
+    byte[] end = random.board.owners.clone();
+    while (random.undo()) {
+      t.checkExpect(random.winner(), 0);
+    }
+    while (random.redo()) {
+      // play it all again
+    }
+    t.checkExpect(random.winner(), winner);
+    t.checkExpect(random.board.owners, end);
+    
+    // the world's keys, going back past the computer's moves
+    BridgItWorld world = new BridgItWorld(5);
+    world.setComputer(2, new RandomStrategy(6));
+    world.onMouseClicked(new Posn(60, 60));
+    this.tickUntilMoved(world);
+    t.checkExpect(world.game.moveCount, 2);
+    world.onKeyEvent("u");
+    t.checkExpect(world.game.moveCount, 0);
+    t.checkExpect(world.currentPlayer, 1);
+    world.onKeyEvent("r");
+    t.checkExpect(world.game.moveCount, 2);
+    t.checkExpect(world.currentPlayer, 1);
+    world.onKeyEvent("x");
+    t.checkExpect(world.game.moveCount, 2);
+  }
+  
+  void testPositionCache(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "A cache must hold at least one position"), "PositionCache", 0);
+    PositionCache cache = new PositionCache(4);
+    t.checkExpect(cache.segments.length, 1);
+    t.checkExpect(cache.get(7L), PositionCache.MISSING);
+    cache.put(7L, 2, PositionCache.UNKNOWN);
+    long entry = cache.get(7L);
+    t.checkExpect(PositionCache.winnerOf(entry), 2);
+    t.checkExpect(PositionCache.evaluationOf(entry), PositionCache.UNKNOWN);
+    cache.put(7L, 0, -35);
+    t.checkExpect(PositionCache.evaluationOf(cache.get(7L)), -35);
+    t.checkExpect(cache.hits.get(), 2L);
+    t.checkExpect(cache.misses.get(), 1L);
+    t.checkInexact(cache.hitRate(), 2.0 / 3, 0.001);
+    
+    // a full cache evicts the first position the clock finds unread, so 7,
+    // which was read, survives while 8 does not
+    cache.put(8L, 1, 0);
+    cache.put(9L, 1, 0);
+    cache.put(10L, 1, 0);
+    t.checkExpect(cache.size(), 4);
+    cache.put(11L, 1, 0);
+    t.checkExpect(cache.size(), 4);
+    t.checkExpect(cache.evictions.get(), 1L);
+    t.checkExpect(cache.get(8L), PositionCache.MISSING);
+    t.checkExpect(cache.get(7L) != PositionCache.MISSING, true);
+    t.checkExpect(cache.get(11L) != PositionCache.MISSING, true);
+    
+    // hashes that collide in the index are still found after evictions
+    PositionCache small = new PositionCache(8);
+    boolean found = true;
+    for (long i = 0; i < 1000; i++) {
+      small.put(i * 16, 1, (int) i);
+      found = found && PositionCache.evaluationOf(small.get(i * 16)) == i;
+      for (long j = Math.max(0, i - 7); j < i; j++) {
+        long kept = small.get(j * 16);
+        found = found
+            && (kept == PositionCache.MISSING || PositionCache.evaluationOf(kept) == j);
+      }
+    }
+    t.checkExpect(found, true);
+    t.checkExpect(small.size(), 8);
+    
+    // larger caches are split into segments between threads
+    PositionCache shared = new PositionCache(1 << 16);
+    t.checkExpect(shared.segments.length, 64);
+    t.checkExpect(shared.capacity, 1 << 16);
+    LongStream.range(0, 100000).parallel()
+        .forEach(i -> shared.put(i * 0x9E3779B97F4A7C15L, 1, (int) i));
+    t.checkExpect(shared.size() <= shared.capacity, true);
+    t.checkExpect(shared.evictions.get(), 100000L - shared.size());
+    shared.clear();
+    t.checkExpect(shared.size(), 0);
+    t.checkExpect(shared.hitRate(), 0.0);
+  }
+  
+  void testIncrementalHash(Tester t) {
+    BridgItGame game = new BridgItGame(7);
+    t.checkExpect(game.hash, 0L);
+    game.play(8);
+    game.play(10);
+    t.checkExpect(game.hash, game.zobrist.hash(game.board, 1));
+    game.play(16);
+    t.checkExpect(game.hash, game.zobrist.hash(game.board, 2));
+    game.undo();
+    t.checkExpect(game.hash, game.zobrist.hash(game.board, 1));
+    game.redo();
+    t.checkExpect(game.hash, game.zobrist.hash(game.board, 2));
+    game.reset();
+    t.checkExpect(game.hash, 0L);
+    
+    // the same position reached in another order hashes the same
+    BridgItGame other = new BridgItGame(7);
+    other.play(16);
+    other.play(10);
+    other.play(8);
+    game.play(8);
+    game.play(10);
+    game.play(16);
+    t.checkExpect(other.hash, game.hash);
+    t.checkExpect(new BridgItGame(9).zobrist.key(1, 8) != game.zobrist.key(1, 8), true);
+    
+    // clicks in the world update it too
+    BridgItWorld world = new BridgItWorld(5);
+    world.onMouseClicked(new Posn(60, 60));
+    t.checkExpect(world.game.hash,
+        world.game.zobrist.key(1, 6) ^ world.game.zobrist.playerTwoToMove);
+    
+    // players sharing a cache reuse each other's evaluations
+    PositionCache cache = new PositionCache(1 << 12);
+    new AlphaBetaPlayer(20, 10, cache).chooseMove(new Board(5), 1);
+    long misses = cache.misses.get();
+    t.checkExpect(misses > 0, true);
+    new AlphaBetaPlayer(20, 10, cache).chooseMove(new Board(5), 1);
+    t.checkExpect(cache.hits.get() > 0, true);
+  }
+  
+  void testDistanceEvaluator(Tester t) {
+    // on an empty 5x5 board each player needs two cells
+    Board board = new Board(5);
+    DistanceEvaluator evaluator = new DistanceEvaluator(board);
+    t.checkExpect(evaluator.distance(1), 2);
+    t.checkExpect(evaluator.distance(2), 2);
+    t.checkExpect(evaluator.evaluate(1), 0);
+    
+    board.claim(6, 1);
+    evaluator.update(6);
+    t.checkExpect(evaluator.distance(1), 1);
+    t.checkExpect(evaluator.evaluate(2), -1);
+    board.claim(8, 2);
+    evaluator.update(8);
+    t.checkExpect(evaluator.distance(1), 2);
+    t.checkExpect(evaluator.distance(2), 1);
+    board.claim(12, 1);
+    evaluator.update(12);
+    board.claim(16, 2);
+    evaluator.update(16);
+    board.claim(18, 1);
+    evaluator.update(18);
+    t.checkExpect(evaluator.distance(1), 0);
+    t.checkExpect(evaluator.distance(2), DistanceEvaluator.UNREACHABLE);
+    t.checkExpect(evaluator.evaluate(1), 25);
+    
+    // taking moves back undoes the distances too
+    board.claim(18, 0);
+    evaluator.update(18);
+    t.checkExpect(evaluator.distance(1), 1);
+    t.checkExpect(evaluator.distance(2), 1);
+    
+    // random games played and taken back agree with solving from scratch
+    Random rand = new Random(15);
+    Board big = new Board(11);
+    DistanceEvaluator incremental = new DistanceEvaluator(big);
+    DistanceEvaluator fresh = new DistanceEvaluator(big);
+    int[] played = new int[big.cellCount()];
+    int count = 0;
+    boolean agree = true;
+    for (int step = 0; step < 600; step++) {
+      int index = rand.nextInt(big.cellCount());
+      if (count > 0 && rand.nextInt(3) == 0) {
+        count -= 1;
+        big.claim(played[count], 0);
+        incremental.update(played[count]);
+      }
+      else if (big.playable(index)) {
+        big.claim(index, 1 + rand.nextInt(2));
+        incremental.update(index);
+        played[count] = index;
+        count += 1;
+      }
+      fresh.solve(big);
+      agree = agree && Arrays.equals(incremental.dist[1], fresh.dist[1])
+          && Arrays.equals(incremental.dist[2], fresh.dist[2]);
+    }
+    t.checkExpect(agree, true);
+    
+    // solving a board of the same size reuses the buffers
+    int[] buffer = fresh.dist[1];
+    fresh.solve(new Board(11));
+    t.checkExpect(fresh.dist[1] == buffer, true);
+    t.checkExpect(fresh.distance(1), 5);
+    fresh.solve(new Board(7));
+    t.checkExpect(fresh.distance(2), 3);
+  }
+  
+  void testSparseBoard(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "Board size must be an odd number greater than 3"), "SparseBoard", 4);
+    
+    // the starting pattern matches the dense board, without allocating anything
+    SparseBoard sparse = new SparseBoard(5);
+    Board dense = new Board(5);
+    boolean same = true;
+    for (int i = 0; i < dense.cellCount(); i++) {
+      same = same && sparse.owner(dense.x(i), dense.y(i)) == dense.owner(i)
+          && sparse.playable(dense.x(i), dense.y(i)) == dense.playable(i);
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(sparse.tileCount(), 0);
+    
+    // the game from testBridgItGame, won by player 1 on the last move
+    t.checkExpect(sparse.claim(1, 1, 1), true);
+    t.checkExpect(sparse.claim(1, 1, 2), false);
+    t.checkExpect(sparse.claim(0, 1, 2), false);
+    sparse.claim(3, 1, 2);
+    sparse.claim(2, 2, 1);
+    sparse.claim(1, 3, 2);
+    t.checkExpect(sparse.winner(), 0);
+    sparse.claim(3, 3, 1);
+    t.checkExpect(sparse.winner(), 1);
+    t.checkExpect(sparse.claims, 5);
+    t.checkExpect(sparse.tileCount(), 1);
+    
+    // player 2 wins a column of a huge board, which only allocates tiles along it
+    SparseBoard huge = new SparseBoard(1000001);
+    for (int y = 1; y < huge.size - 1; y += 2) {
+      huge.claim(1, y, 2);
+    }
+    t.checkExpect(huge.winner(), 2);
+    t.checkExpect(huge.claims, 500000);
+    t.checkExpect(huge.tileCount(), (1000001 + 63) / 64);
+    t.checkExpect(huge.sets.count < 1500010, true);
+    
+    // a window drawn far from any move uses the starting pattern
+    WorldScene far = new WorldScene(100, 100);
+    new SparseRenderer(huge).placeWindow(far, 500000, 500000, 2, 2);
+    WorldScene expected = new WorldScene(100, 100);
+    BoardRenderer pattern = new BoardRenderer(new Board(3));
+    expected.placeImageXY(pattern.cellImages[0], 25, 25);
+    expected.placeImageXY(pattern.cellImages[2], 75, 25);
+    expected.placeImageXY(pattern.cellImages[1], 25, 75);
+    expected.placeImageXY(pattern.cellImages[0], 75, 75);
+    t.checkExpect(far, expected);
+    
+    // a window across tiles draws the claims in them
+    WorldScene near = new WorldScene(100, 100);
+    new SparseRenderer(huge).placeWindow(near, 1, 63, 1, 2);
+    WorldScene claimed = new WorldScene(100, 100);
+    claimed.placeImageXY(pattern.cellImages[2], 25, 25);
+    claimed.placeImageXY(pattern.cellImages[2], 25, 75);
+    t.checkExpect(near, claimed);
+  }
+  
+  void testTileMap(Tester t) {
+    TileMap map = new TileMap();
+    SparseTile origin = new SparseTile();
+    t.checkExpect(map.get(0L), null);
+    map.put(0L, origin);
+    t.checkExpect(map.get(0L) == origin, true);
+    
+    // many keys, spread over both halves, survive the table growing to stay at
+    // most half full
+    SparseTile[] tiles = new SparseTile[1000];
+    for (int i = 0; i < tiles.length; i++) {
+      tiles[i] = new SparseTile();
+      map.put(((long) i << 32) | (i * 7), tiles[i]);
+    }
+    boolean found = true;
+    for (int i = 0; i < tiles.length; i++) {
+      found = found && map.get(((long) i << 32) | (i * 7)) == tiles[i];
+    }
+    t.checkExpect(found, true);
+    t.checkExpect(map.size(), 1000);
+    t.checkExpect(map.get(5L), null);
+    t.checkExpect(map.keys.length, 2048);
+    
+    // a key stored again replaces its tile
+    map.put(0L, tiles[3]);
+    t.checkExpect(map.get(0L) == tiles[3], true);
+    t.checkExpect(map.size(), 1000);
+  }
+  
+  void testViewport(Tester t) {
+    // a board that fits is shown whole
+    Viewport small = new Viewport(5);
+    t.checkExpect(small.width, 250);
+    t.checkExpect(small.showsWholeBoard(), true);
+    t.checkExpect(small.cellAt(new Posn(60, 110)), 11);
+    t.checkExpect(small.cellAt(new Posn(250, 10)), -1);
+    t.checkExpect(small.cellAt(new Posn(-1, 10)), -1);
+    small.panBy(3, 3);
+    t.checkExpect(small.left, 0);
+    small.zoomBy(1);
+    t.checkExpect(small.cellSize, 100);
+    t.checkExpect(small.showsWholeBoard(), false);
+    t.checkExpect(small.columns(), 3);
+    t.checkExpect(small.left, 1);
+    t.checkExpect(small.cellAt(new Posn(60, 110)), 11);
+    small.panBy(5, 5);
+    t.checkExpect(small.left, 3);
+    t.checkExpect(small.columns(), 2);
+    t.checkExpect(small.cellAt(new Posn(210, 10)), -1);
+    t.checkExpect(small.cellAt(new Posn(110, 110)), 24);
+    small.zoomBy(-10);
+    t.checkExpect(small.cellSize, 5);
+    t.checkExpect(small.left, 0);
+    small.reset();
+    t.checkExpect(small.showsWholeBoard(), true);
+    
+    // a large board only shows a window onto it
+    Viewport large = new Viewport(101);
+    t.checkExpect(large.width, Viewport.MAX_PIXELS);
+    t.checkExpect(large.showsWholeBoard(), false);
+    t.checkExpect(large.columns(), 20);
+    large.centerOn(100, 50);
+    t.checkExpect(large.left, 81);
+    t.checkExpect(large.top, 40);
+    t.checkExpect(large.cellAt(new Posn(25, 25)), 81 + 40 * 101);
+    large.zoomBy(-1);
+    t.checkExpect(large.cellSize, 25);
+    t.checkExpect(large.left, 61);
+    t.checkExpect(large.top, 30);
+  }
+  
+  void testViewportWorld(Tester t) {
+    BridgItWorld world = new BridgItWorld(5);
+    world.onKeyEvent("+");
+    t.checkExpect(world.view.cellSize, 100);
+    t.checkExpect(world.view.left, 1);
+    t.checkExpect(world.view.top, 1);
+    world.onKeyEvent("right");
+    world.onKeyEvent("down");
+    t.checkExpect(world.view.left, 2);
+    t.checkExpect(world.view.top, 2);
+    
+    // clicks go through the view, so the top left of the window is cell (2, 2)
+    world.onMouseClicked(new Posn(130, 30), "LeftButton");
+    t.checkExpect(world.board.owner(13), 2);
+    t.checkExpect(world.currentPlayer, 1);
+    world.onMouseClicked(new Posn(30, 30));
+    t.checkExpect(world.board.owner(12), 1);
+    
+    // only the cells in the window are drawn, at the view's size
+    WorldImage white = new RectangleImage(100, 100, OutlineMode.SOLID, Color.WHITE);
+    WorldImage pink = new RectangleImage(100, 100, OutlineMode.SOLID, Color.PINK);
+    WorldImage magenta = new RectangleImage(100, 100, OutlineMode.SOLID, Color.MAGENTA);
+    WorldScene ws = new WorldScene(250, 250);
+    ws.placeImageXY(new RectangleImage(300, 300, OutlineMode.SOLID, Color.DARK_GRAY), 150, 150);
+    ws.placeImageXY(pink, 50, 50);
+    ws.placeImageXY(magenta, 150, 50);
+    ws.placeImageXY(white, 250, 50);
+    ws.placeImageXY(pink, 50, 150);
+    ws.placeImageXY(white, 150, 150);
+    ws.placeImageXY(pink, 250, 150);
+    ws.placeImageXY(white, 50, 250);
+    ws.placeImageXY(magenta, 150, 250);
+    ws.placeImageXY(white, 250, 250);
+    t.checkExpect(world.makeScene(), ws);
+    
+    // a right click centers on a cell, and "0" goes back to the whole board
+    world.onMouseClicked(new Posn(10, 10), "RightButton");
+    t.checkExpect(world.view.left, 1);
+    t.checkExpect(world.view.top, 1);
+    world.onKeyEvent("0");
+    WorldScene whole = new WorldScene(250, 250);
+    whole.placeImageXY(world.drawBoard(world.board), 125, 125);
+    t.checkExpect(world.makeScene(), whole);
+    
+    // a large board's scene is the size of its window
+    BridgItWorld large = new BridgItWorld(101);
+    t.checkExpect(large.makeScene().width, Viewport.MAX_PIXELS);
+  }
+  
+  void testBoardRasterizer(Tester t) throws IOException {
+    t.checkConstructorException(new IllegalArgumentException(
+        "A cell must be at least one pixel"), "BoardRasterizer", 0);
+    t.checkConstructorException(new IllegalArgumentException(
+        "There must be at least one thread"), "PositionExporter", 1, 0);
+    
+    Board board = new Board(5);
+    board.claim(6, 1);
+    board.claim(8, 2);
+    BoardRasterizer rasterizer = new BoardRasterizer(3);
+    BufferedImage image = rasterizer.render(board);
+    t.checkExpect(image.getWidth(), 15);
+    // every pixel has the color of its cell
+    boolean matches = true;
+    for (int y = 0; y < 15; y++) {
+      for (int x = 0; x < 15; x++) {
+        int owner = board.owner(board.index(x / 3, y / 3));
+        matches = matches && image.getRGB(x, y) == BoardRasterizer.COLORS[owner].getRGB();
+      }
+    }
+    t.checkExpect(matches, true);
+    t.checkExpect(rasterizer.render(new Board(5)) == image, true);
+    t.checkExpect(new Color(image.getRGB(3, 3)), Color.WHITE);
+    
+    // the picture for a scene only repaints the cells that changed
+    board.claim(12, 1);
+    ComputedPixelImage picture = (ComputedPixelImage) rasterizer.picture(board);
+    t.checkExpect(picture.getColorAt(7, 7), Color.PINK);
+    t.checkExpect(picture.getColorAt(4, 4), Color.PINK);
+    board.claim(12, 0);
+    board.claim(16, 2);
+    t.checkExpect(rasterizer.picture(board) == picture, true);
+    t.checkExpect(picture.getColorAt(7, 7), Color.WHITE);
+    t.checkExpect(picture.getColorAt(4, 10), Color.MAGENTA);
+    t.checkExpect(rasterizer.painted, board.owners);
+    // runs of changed cells in a row are painted together, and every pixel still
+    // has the color of its cell
+    board.claim(10, 2);
+    board.claim(11, 2);
+    board.claim(13, 1);
+    board.claim(14, 1);
+    rasterizer.picture(board);
+    boolean painted = true;
+    for (int y = 0; y < 15; y++) {
+      for (int x = 0; x < 15; x++) {
+        int owner = board.owner(board.index(x / 3, y / 3));
+        painted = painted && picture.getColorAt(x, y).equals(BoardRasterizer.COLORS[owner]);
+      }
+    }
+    t.checkExpect(painted, true);
+    
+    // the world can show it in place of the nested images
+    BridgItWorld world = new BridgItWorld(3);
+    world.setRasterized(true);
+    world.onMouseClicked(new Posn(75, 75));
+    WorldScene ws = new WorldScene(150, 150);
+    ws.placeImageXY(world.rasterizer.picture(world.board), 75, 75);
+    t.checkExpect(world.makeScene(), ws);
+    t.checkExpect(world.rasterizer.picture.getColorAt(75, 75), Color.PINK);
+    world.setRasterized(false);
+    t.checkExpect(world.rasterizer, null);
+    
+    // replayed games are exported as thumbnails in parallel
+    Path file = Files.createTempFile("bridgit", ".games");
+    GameRecorder recorder = new GameRecorder(file);
+    BridgItGame game = new BridgItGame(7);
+    game.record(recorder);
+    for (int i = 0; i < 20; i++) {
+      game.reset();
+      game.playOut(new RandomStrategy(i), new RandomStrategy(i + 100));
+    }
+    game.endRecording();
+    recorder.close();
+    PositionExporter exporter = new PositionExporter(2, 3);
+    Path directory = Files.createTempDirectory("bridgit");
+    t.checkException(new IllegalStateException("The export has not been started"),
+        exporter, "finish");
+    exporter.start(directory);
+    // the queue holds only a few positions at a time
+    t.checkExpect(exporter.queue.remainingCapacity(), 3 * PositionExporter.QUEUED_PER_THREAD);
+    GameReplay replay = new GameReplay(file);
+    replay.forEach(exporter);
+    replay.close();
+    t.checkExpect(exporter.finish(), 20);
+    t.checkExpect(exporter.queue, null);
+    BufferedImage last = ImageIO.read(directory.resolve("position-000019.png").toFile());
+    t.checkExpect(last.getWidth(), 14);
+    t.checkExpect(last.getRGB(3, 1), Color.MAGENTA.getRGB());
+    for (int i = 0; i < 20; i++) {
+      Files.delete(directory.resolve(String.format("position-%06d.png", i)));
+    }
+    Files.delete(directory);
+    Files.delete(file);
+  }
+  
+  void testSceneCache(Tester t) {
+    BridgItWorld world = new BridgItWorld(5);
+    WorldScene first = world.makeScene();
+    t.checkExpect(world.makeScene() == first, true);
+    
+    // idle ticks and rejected clicks change nothing
+    world.onTick();
+    world.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(world.version, 0);
+    t.checkExpect(world.makeScene() == first, true);
+    
+    // an accepted move draws a new scene, once
+    world.onMouseClicked(new Posn(60, 60));
+    t.checkExpect(world.version, 1);
+    WorldScene second = world.makeScene();
+    t.checkExpect(second == first, false);
+    t.checkExpect(world.makeScene() == second, true);
+    
+    // so do undo, the view, and changes made to the board directly
+    world.onKeyEvent("u");
+    t.checkExpect(world.version, 2);
+    WorldScene third = world.makeScene();
+    t.checkExpect(third == second, false);
+    world.onKeyEvent("+");
+    WorldScene fourth = world.makeScene();
+    t.checkExpect(fourth == third, false);
+    world.board.claim(12, 2);
+    t.checkExpect(world.makeScene() == fourth, false);
+    world.onKeyEvent("x");
+    t.checkExpect(world.makeScene() == world.makeScene(), true);
+  }
+  
+  void testHistogram(Tester t) {
+    Metrics.enable();
+    Histogram h = new Histogram();
+    t.checkExpect(h.percentile(0.5), 0L);
+    t.checkExpect(h.mean(), 0.0);
+    for (long v = 1; v <= 5; v++) {
+      h.record(v);
+    }
+    t.checkExpect(h.count(), 5L);
+    t.checkExpect(h.mean(), 3.0);
+    t.checkExpect(h.max(), 5L);
+    t.checkExpect(h.percentile(0.5), 3L);
+    t.checkExpect(h.percentile(1.0), 5L);
+    
+    // large values land in a bucket no more than an eighth below them
+    t.checkExpect(Histogram.bucket(8), 8);
+    t.checkExpect(Histogram.lowest(Histogram.bucket(1000)), 960L);
+    t.checkExpect(Histogram.lowest(Histogram.bucket(Long.MAX_VALUE)) > Long.MAX_VALUE / 8 * 7,
+        true);
+    h.record(1000);
+    t.checkExpect(h.percentile(0.99), 960L);
+    h.reset();
+    t.checkExpect(h.count(), 0L);
+    
+    // nothing is counted while metrics are off
+    Metrics.disable();
+    h.record(3);
+    t.checkExpect(h.count(), 0L);
+    t.checkExpect(h.since(5), 0L);
+    t.checkExpect(Metrics.now(), 0L);
+    t.checkExpect(Metrics.allocated(), 0L);
+  }
+  
+  void testMetrics(Tester t) throws JMException {
+    Metrics.disable();
+    Metrics.reset();
+    BridgItWorld world = new BridgItWorld(5);
+    world.onMouseClicked(new Posn(60, 60));
+    world.makeScene();
+    t.checkExpect(Metrics.CLICK_CLAIM.count(), 0L);
+    t.checkExpect(Metrics.MAKE_SCENE.count(), 0L);
+    
+    // a click is timed in three steps, even when it is not allowed
+    Metrics.enable();
+    world.onMouseClicked(new Posn(160, 60));
+    world.onMouseClicked(new Posn(10, 10));
+    t.checkExpect(Metrics.CLICK_VALIDATE.count(), 2L);
+    t.checkExpect(Metrics.CLICK_CLAIM.count(), 2L);
+    t.checkExpect(Metrics.CLICK_WIN_CHECK.count(), 2L);
+    t.checkExpect(world.board.owner(8), 2);
+    
+    // a step that began while metrics were off is not counted when they come on
+    Metrics.disable();
+    long before = Metrics.now();
+    Metrics.enable();
+    t.checkExpect(Metrics.CLICK_CLAIM.since(before) > 0, true);
+    t.checkExpect(Metrics.CLICK_CLAIM.count(), 2L);
+    
+    // scenes, cached or not, and the boards drawn and built
+    world.makeScene();
+    world.makeScene();
+    t.checkExpect(Metrics.MAKE_SCENE.count(), 2L);
+    t.checkExpect(Metrics.SCENES_CACHED.sum(), 1L);
+    world.drawBoard(world.board);
+    new BridgItWorld(101).genBoard(101);
+    t.checkExpect(Metrics.DRAW_BOARD.count(), 1L);
+    t.checkExpect(Metrics.GEN_BOARD.count(), 1L);
+    t.checkExpect(Metrics.GEN_BOARD_BYTES.sum() > 0, true);
+    
+    // a search counts the cells it takes off its stack
+    Board board = new Board(3);
+    PathSearch search = new PathSearch(board);
+    search.hasPath(3, i -> i % 3 == 2);
+    board.claim(4, 1);
+    search.hasPath(3, i -> i % 3 == 2);
+    t.checkExpect(Metrics.PATH_CELLS.count(), 2L);
+    t.checkExpect(Metrics.PATH_CELLS.max(), 2L);
+    t.checkExpect(Metrics.PATH_CELLS.mean(), 1.5);
+    
+    t.checkExpect(Metrics.report().contains(
+        String.format("%-32s count 2 ", "onMouseClicked.claim.ns")), true);
+    t.checkExpect(Metrics.report().contains(
+        String.format("%-32s 1%n", "makeScene.cached")), true);
+    
+    // the same numbers over JMX, where they can also be reset
+    Metrics.registerJmx();
+    Metrics.registerJmx();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(Metrics.JMX_NAME);
+    t.checkExpect(server.getAttribute(name, "pathSearch.cellsVisited.count"), 2L);
+    t.checkExpect(server.getAttribute(name, "pathSearch.cellsVisited.mean"), 1.5);
+    t.checkExpect(server.getAttribute(name, "makeScene.cached"), 1L);
+    t.checkExpect(server.getAttribute(name, "enabled"), true);
+    t.checkExpect(server.getMBeanInfo(name).getAttributes().length,
+        1 + Metrics.HISTOGRAMS.size() * 5 + Metrics.COUNTERS.size());
+    server.invoke(name, "reset", new Object[0], new String[0]);
+    t.checkExpect(Metrics.PATH_CELLS.count(), 0L);
+    server.setAttribute(name, new Attribute("enabled", false));
+    t.checkExpect(Metrics.enabled, false);
+    
+    // the report is printed over and over until the dump is stopped
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Metrics.startDump(10, new PrintStream(bytes, true));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!bytes.toString().contains("genBoard.ns")
+        && System.currentTimeMillis() < deadline) {
+      Thread.onSpinWait();
+    }
+    Metrics.stopDump();
+    t.checkExpect(bytes.toString().contains("genBoard.ns"), true);
+    t.checkException(new IllegalArgumentException("The period must be positive"),
+        new Metrics(), "startDump", 0L, System.out);
+    Metrics.reset();
+  }
+  
+  void testGameServer(Tester t) throws IOException {
+    GameServer server = new GameServer(0);
+    server.start();
+    Socket first = new Socket("127.0.0.1", server.port());
+    Socket second = new Socket("127.0.0.1", server.port());
+    first.setSoTimeout(5000);
+    second.setSoTimeout(5000);
+    BufferedReader firstIn = new BufferedReader(new InputStreamReader(first.getInputStream()));
+    BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream()));
+    PrintWriter firstOut = new PrintWriter(first.getOutputStream(), true);
+    PrintWriter secondOut = new PrintWriter(second.getOutputStream(), true);
+    
+    firstOut.println("NEW 4");
+    t.checkExpect(firstIn.readLine(), "ERROR 0 Board size must be an odd number greater than 3");
+    firstOut.println("NEW 1001");
+    t.checkExpect(firstIn.readLine(), "ERROR 0 Board size must be at most 101");
+    firstOut.println("HELLO");
+    t.checkExpect(firstIn.readLine(), "ERROR 0 unknown command");
+    firstOut.println("NEW five");
+    t.checkExpect(firstIn.readLine(), "ERROR 0 bad number");
+    firstOut.println("NEW 5");
+    String id = firstIn.readLine().split(" ")[1];
+    
+    // the player who joins takes player 2's seat, and only the player to move may move
+    secondOut.println("JOIN " + id);
+    t.checkExpect(firstIn.readLine(), "JOINED " + id + " 2");
+    t.checkExpect(secondIn.readLine(), "JOINED " + id + " 2");
+    secondOut.println("JOIN " + id);
+    t.checkExpect(secondIn.readLine(), "ERROR " + id + " match is full");
+    secondOut.println("MOVE " + id + " 6");
+    t.checkExpect(secondIn.readLine(), "ERROR " + id + " not your turn");
+    firstOut.println("MOVE " + id + " 0");
+    t.checkExpect(firstIn.readLine(), "ERROR " + id + " illegal move");
+    
+    // the game from testBridgItGame, seen by both players
+    int[] moves = {6, 8, 12, 16, 18};
+    for (int i = 0; i < moves.length; i++) {
+      PrintWriter mover = i % 2 == 0 ? firstOut : secondOut;
+      mover.println("MOVE " + id + " " + moves[i]);
+      String winner = i == moves.length - 1 ? "1" : "0";
+      t.checkExpect(firstIn.readLine(), "MOVED " + id + " " + moves[i] + " " + winner);
+      t.checkExpect(secondIn.readLine(), "MOVED " + id + " " + moves[i] + " " + winner);
+    }
+    firstOut.println("MOVE " + id + " 10");
+    t.checkExpect(firstIn.readLine(), "ERROR " + id + " no such match");
+    t.checkExpect(server.moves.get(), 6L);
+    
+    // a match is dropped when one of its players leaves, and the other is told
+    firstOut.println("NEW 5");
+    String left = firstIn.readLine().split(" ")[1];
+    secondOut.println("JOIN " + left);
+    t.checkExpect(firstIn.readLine(), "JOINED " + left + " 2");
+    t.checkExpect(secondIn.readLine(), "JOINED " + left + " 2");
+    firstOut.println("QUIT");
+    t.checkExpect(firstIn.readLine(), null);
+    t.checkExpect(secondIn.readLine(), "ABANDONED " + left);
+    secondOut.println("MOVE " + left + " 6");
+    t.checkExpect(secondIn.readLine(), "ERROR " + left + " no such match");
+    first.close();
+    
+    // nobody can join a match once the QUIT that ends it has been read
+    boolean turnedAway = true;
+    for (int i = 0; i < 200; i++) {
+      Socket owner = new Socket("127.0.0.1", server.port());
+      owner.setSoTimeout(5000);
+      BufferedReader ownerIn = new BufferedReader(new InputStreamReader(owner.getInputStream()));
+      PrintWriter ownerOut = new PrintWriter(owner.getOutputStream(), true);
+      ownerOut.println("NEW 5");
+      String match = ownerIn.readLine().split(" ")[1];
+      ownerOut.println("QUIT");
+      turnedAway = turnedAway && ownerIn.readLine() == null;
+      secondOut.println("JOIN " + match);
+      turnedAway = turnedAway && secondIn.readLine().equals("ERROR " + match + " no such match");
+      owner.close();
+    }
+    t.checkExpect(turnedAway, true);
+    
+    // a player who joins and leaves at once is seated and then gone, never left
+    // holding a seat on a closed connection
+    boolean dropped = true;
+    for (int i = 0; i < 50; i++) {
+      secondOut.println("NEW 5");
+      String match = secondIn.readLine().split(" ")[1];
+      Socket joiner = new Socket("127.0.0.1", server.port());
+      joiner.getOutputStream().write(("JOIN " + match + "\nQUIT\n").getBytes());
+      dropped = dropped
+          && secondIn.readLine().equals("JOINED " + match + " 2")
+          && secondIn.readLine().equals("ABANDONED " + match)
+          && !server.matches.containsKey(Integer.parseInt(match));
+      joiner.close();
+    }
+    t.checkExpect(dropped, true);
+    second.close();
+    
+    // many matches played at once all finish, and no move is refused
+    LoadResult result = new LoadGenerator(server.port(), 3, 40, 7).run();
+    t.checkExpect(result.matches, 120L);
+    t.checkExpect(result.refused, 0L);
+    t.checkExpect(result.moves >= 120 * 6, true);
+    t.checkExpect(server.matches.isEmpty(), true);
+    t.checkExpect(server.averageValidationNanos() > 0, true);
+    server.close();
+    t.checkConstructorException(new IllegalArgumentException(
+        "There must be at least one connection"), "LoadGenerator", 1, 0, 1, 5);
+  }
+  
+  void testGameRecord(Tester t) throws IOException {
+    Path file = Files.createTempFile("bridgit", ".games");
+    GameRecorder recorder = new GameRecorder(file);
+    
+    // a world records the moves that were accepted, then writes the game at the end
+    BridgItWorld world = new BridgItWorld(5);
+    world.game.record(recorder);
+    world.onMouseClicked(new Posn(60, 60));
+    world.onMouseClicked(new Posn(60, 60));
+    world.onMouseClicked(new Posn(160, 60));
+    world.onMouseClicked(new Posn(110, 110));
+    world.onMouseClicked(new Posn(60, 160));
+    world.onMouseClicked(new Posn(160, 160));
+    
+    // a board of size 131 needs two bytes for its size and for large indices
+    BridgItGame game = new BridgItGame(131);
+    game.play(132);
+    t.checkException(new IllegalStateException("Recording must start before the first move"),
+        game, "record", recorder);
+    game.reset();
+    game.record(recorder);
+    game.play(132);
+    game.endRecording();
+    
+    // games without moves are left out, however often they are reset
+    BridgItGame idle = new BridgItGame(5);
+    idle.record(recorder);
+    idle.reset();
+    idle.reset();
+    idle.endRecording();
+    
+    // a game cut off while it was being written
+    BridgItGame cut = new BridgItGame(5);
+    cut.record(recorder);
+    cut.play(12);
+    recorder.close();
+    
+    t.checkExpect(Files.readAllBytes(file), new byte[] {
+        5, 7, 9, 13, 17, 19, 0,
+        (byte) 0x83, 1, (byte) 0x85, 1, 0,
+        5, 13});
+    
+    // every window size reads the same games, even when varints cross windows
+    for (int window : new int[] {1, 2, 5, 1 << 20}) {
+      GameReplay replay = new GameReplay(file, window);
+      ReplayStatistics stats = new ReplayStatistics();
+      t.checkExpect(replay.forEach(stats), 3L);
+      t.checkExpect(stats.moves, 7L);
+      t.checkExpect(stats.illegalMoves, 0L);
+      t.checkExpect(stats.unfinished, 1L);
+      t.checkExpect(stats.wins, new long[] {2, 1, 0});
+      replay.close();
+    }
+    
+    // replaying again starts from the first window
+    GameReplay twice = new GameReplay(file, 2);
+    ReplayStatistics first = new ReplayStatistics();
+    ReplayStatistics second = new ReplayStatistics();
+    t.checkExpect(twice.forEach(first), 3L);
+    t.checkExpect(twice.forEach(second), 3L);
+    t.checkExpect(second.moves, first.moves);
+    t.checkExpect(second.wins, first.wins);
+    twice.close();
+    
+    t.checkConstructorException(new IllegalArgumentException(
+        "The window must be at least one byte"), "GameReplay", file, 0);
+    
+    // sizes no game can have and numbers longer than an int are rejected, while a
+    // size cut off by the end of the file is left out
+    Files.write(file, new byte[] {0, 0});
+    GameReplay empty = new GameReplay(file, 2);
+    t.checkException(new IllegalArgumentException("Not a game record: bad board size 0"),
+        empty, "forEach", new ReplayStatistics());
+    empty.close();
+    Files.write(file, new byte[] {4, 7, 0});
+    GameReplay even = new GameReplay(file, 2);
+    t.checkException(new IllegalArgumentException("Not a game record: bad board size 4"),
+        even, "forEach", new ReplayStatistics());
+    even.close();
+    Files.write(file, new byte[] {5, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+        (byte) 0x80, 1, 0});
+    GameReplay tooLong = new GameReplay(file, 2);
+    t.checkException(new IllegalArgumentException("Not a game record: a number is too long"),
+        tooLong, "forEach", new ReplayStatistics());
+    tooLong.close();
+    Files.write(file, new byte[] {5, 7, 0, (byte) 0x83});
+    GameReplay cutSize = new GameReplay(file, 2);
+    t.checkExpect(cutSize.forEach(new ReplayStatistics()), 1L);
+    cutSize.close();
+    Files.delete(file);
+  }
+  
+  // do the game's threat sets hold exactly the cells that win when claimed, found
+  // by trying every free cell for both players
+  boolean threatsMatch(BridgItGame game) {
+    ThreatTracker threats = game.threats();
+    Board board = game.board;
+    boolean same = true;
+    for (int player = 1; player <= 2; player++) {
+      int count = 0;
+      for (int i = 0; i < board.cellCount(); i++) {
+        boolean wins = false;
+        if (board.playable(i)) {
+          board.claim(i, player);
+          wins = new WinDetector(board).hasWon(player);
+          board.claim(i, 0);
+        }
+        same = same && threats.winning(player, i) == wins;
+        count += wins ? 1 : 0;
+      }
+      same = same && threats.count(player) == count;
+    }
+    return same;
+  }
+  
+  void testThreatTracker(Tester t) {
+    // player 1 threatens to finish the row at 8 and at 18
+    BridgItGame game = new BridgItGame(5);
+    t.checkExpect(game.threats, null);
+    game.play(6);
+    game.play(16);
+    game.play(12);
+    ThreatTracker threats = game.threats();
+    t.checkExpect(threats.count(1), 2);
+    t.checkExpect(threats.winning(1, 8), true);
+    t.checkExpect(threats.winning(1, 18), true);
+    t.checkExpect(threats.winning(1, 16), false);
+    t.checkExpect(threats.first(2), -1);
+    int[] cells = new int[25];
+    t.checkExpect(threats.winningMoves(1, cells), 2);
+    t.checkExpect(cells[0] + cells[1], 26);
+    
+    // blocking one leaves the other, and undoing the block puts it back
+    game.play(8);
+    t.checkExpect(threats.count(1), 1);
+    t.checkExpect(threats.first(1), 18);
+    t.checkExpect(threatsMatch(game), true);
+    game.undo();
+    t.checkExpect(threats.count(1), 2);
+    // undoing a move made before the tracker works it out again, leaving 6 and 7 a
+    // cell away from the right edge
+    game.undo();
+    t.checkExpect(threats.first(1), 8);
+    t.checkExpect(threatsMatch(game), true);
+    game.reset();
+    t.checkExpect(threatsMatch(game), true);
+    
+    // random games with undos keep the sets exact after every move
+    BridgItGame big = new BridgItGame(11);
+    big.threats();
+    Random rand = new Random(11);
+    boolean exact = true;
+    for (int round = 0; round < 4; round++) {
+      for (int move = 0; move < 60 && big.winner() == 0; move++) {
+        int index = rand.nextInt(121);
+        if (big.play(index)) {
+          exact = exact && (big.winner() != 0 || threatsMatch(big));
+          if (rand.nextInt(4) == 0) {
+            big.undo();
+            exact = exact && threatsMatch(big);
+          }
+        }
+      }
+      big.reset();
+      exact = exact && threatsMatch(big);
+    }
+    t.checkExpect(exact, true);
+    
+    // any shape and any goals: player 1 joins two corners of a hex board
+    Topology corners = new HexTopology(4, 4);
+    corners.setGoal(1, 0, i -> i == 0);
+    corners.setGoal(1, 1, i -> i == 15);
+    TopologyBoard race = new TopologyBoard(corners);
+    ThreatTracker raceThreats = new ThreatTracker(race.wins);
+    for (int index : new int[] {0, 4, 8, 12, 13}) {
+      race.claim(index, 1);
+      raceThreats.claim(index);
+    }
+    t.checkExpect(raceThreats.count(1), 0);
+    race.claim(14, 1);
+    raceThreats.claim(14);
+    t.checkExpect(raceThreats.first(1), 15);
+    // a lone cell on both of player 2's edges wins by itself
+    TopologyBoard line = new TopologyBoard(new RectTopology(3, 1));
+    t.checkExpect(new ThreatTracker(line.wins).count(2), 3);
+    
+    // the world marks threats on the scene when asked
+    BridgItWorld world = new BridgItWorld(5);
+    world.play(6);
+    world.play(16);
+    world.play(12);
+    WorldScene plain = world.makeScene();
+    world.setHints(true);
+    WorldScene hinted = world.makeScene();
+    t.checkExpect(hinted == plain, false);
+    WorldScene expected = new WorldScene(250, 250);
+    expected.placeImageXY(world.renderer.render(), 125, 125);
+    expected.placeImageXY(new CircleImage(10, OutlineMode.SOLID, Color.PINK), 175, 75);
+    expected.placeImageXY(new CircleImage(10, OutlineMode.SOLID, Color.PINK), 175, 175);
+    t.checkExpect(hinted, expected);
+    world.play(8);
+    t.checkExpect(world.makeScene() == hinted, false);
+    world.setHints(false);
+    t.checkExpect(world.hints, false);
+  }
+  
+  void testAlphaBetaPlayer(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "The time budget must be positive"), "AlphaBetaPlayer", 0L, 10);
+    
+    // player 1 to move can finish the row at 18
+    BridgItWorld world = new BridgItWorld(5);
+    world.play(6);
+    world.play(8);
+    world.play(12);
+    world.play(16);
+    AlphaBetaPlayer ai = new AlphaBetaPlayer(1000, 10);
+    t.checkExpect(ai.chooseMove(world.board, 1), 18);
+    t.checkExpect(ai.depthReached, 1);
+    t.checkExpect(ai.nodes > 0, true);
+    t.checkExpect(ai.nodesPerSecond() > 0, true);
+    // the search plays on a copy, so the world's board is unchanged
+    t.checkExpect(world.board.taken(18), false);
+    
+    // player 2 to move must block 18 and then cannot stop player 1 anyway
+    BridgItWorld world2 = new BridgItWorld(5);
+    world2.play(6);
+    world2.play(8);
+    world2.play(12);
+    t.checkExpect(ai.chooseMove(world2.board, 2), 18);
+    // the root's move does not depend on the table, even one of two slots that
+    // every position fights over
+    AlphaBetaPlayer crowded = new AlphaBetaPlayer(200, 1);
+    t.checkExpect(crowded.chooseMove(world2.board, 2), 18);
+    t.checkExpect(crowded.rootMove, 18);
+    
+    // the first player wins a 5x5 board, and the search finds it
+    BridgItWorld world3 = new BridgItWorld(5);
+    int move = ai.chooseMove(world3.board, 1);
+    t.checkExpect(world3.board.playable(move), true);
+    t.checkExpect(ai.table.valueAt(ai.table.find(ai.zobrist.hash(world3.board, 1)), 0) > 0,
+        true);
+  }
+  
+  void testMonteCarloPlayer(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "The time budget must be positive"), "MonteCarloPlayer", 0L, 1);
+    t.checkConstructorException(new IllegalArgumentException(
+        "There must be at least one thread"), "MonteCarloPlayer", 10L, 0);
+    
+    // player 1 to move can finish the row at 18
+    BridgItWorld world = new BridgItWorld(5);
+    world.play(6);
+    world.play(8);
+    world.play(12);
+    world.play(16);
+    MonteCarloPlayer ai = new MonteCarloPlayer(200, 2);
+    t.checkExpect(ai.chooseMove(world.board, 1), 18);
+    t.checkExpect(ai.playouts.get() > 0, true);
+    t.checkExpect(ai.playoutsPerSecond() > 0, true);
+    t.checkExpect(world.board.taken(18), false);
+    
+    // and player 2 has to block it
+    BridgItWorld world2 = new BridgItWorld(5);
+    world2.play(6);
+    world2.play(8);
+    world2.play(12);
+    t.checkExpect(ai.chooseMove(world2.board, 2), 18);
+    
+    // it plays a whole game as an opponent in the world
+    BridgItWorld world3 = new BridgItWorld(7);
+    world3.setComputer(1, new MonteCarloPlayer(5, 1));
+    world3.setComputer(2, new MonteCarloPlayer(5, 1));
+    for (int i = 0; i < 13 && !world3.wins.hasWon(1) && !world3.wins.hasWon(2); i++) {
+      this.tickUntilMoved(world3);
+    }
+    t.checkExpect(world3.wins.hasWon(1) || world3.wins.hasWon(2), true);
+    
+    // a budget too short for the playouts to reach every move still chooses one
+    Board large = new Board(101);
+    MonteCarloPlayer hurried = new MonteCarloPlayer(1, 1);
+    boolean legal = true;
+    for (int i = 0; i < 20; i++) {
+      int move = hurried.chooseMove(large, 1);
+      legal = legal && move != -1 && large.playable(move);
+    }
+    t.checkExpect(legal, true);
+    
+    // a playout grows the tree by one node and rolls out the rest, so even on a
+    // large board the budget holds and there is time for many playouts
+    MonteCarloPlayer timed = new MonteCarloPlayer(100, 1);
+    long start = System.nanoTime();
+    timed.chooseMove(large, 1);
+    t.checkExpect(System.nanoTime() - start < 400000000L, true);
+    t.checkExpect(timed.playouts.get() > 20, true);
+  }
+  
+  void testPlayoutBoard(Tester t) {
+    BridgItWorld world = new BridgItWorld(5);
+    world.play(6);
+    world.play(8);
+    PlayoutBoard playout = new PlayoutBoard(world.board, 3);
+    t.checkExpect(playout.open, new int[] {12, 16, 18});
+    t.checkExpect(playout.openMoves(), new int[] {12, 16, 18});
+    
+    playout.claim(12, 1);
+    playout.claim(16, 2);
+    playout.claim(18, 1);
+    t.checkExpect(playout.openMoves(), new int[] {});
+    t.checkExpect(playout.winner(), 1);
+    
+    playout.reset();
+    t.checkExpect(playout.openMoves(), new int[] {12, 16, 18});
+    playout.claim(12, 2);
+    t.checkExpect(playout.finish(1) == 2, playout.owners[18] == 2 || playout.owners[16] == 2);
+    t.checkExpect(playout.openMoves(), new int[] {});
+  }
+  
+  // does walking every vertex's lists find each edge of the solver's trees once at
+  // each of its ends, and nothing else
+  boolean treeListsMatch(SpanningTreeSolver solver) {
+    int[] seen = new int[solver.edgeU.length];
+    for (int k = 0; k < 2; k++) {
+      for (int v = 0; v < solver.vertexCount; v++) {
+        for (int end = solver.firstLive(k, v); end != -1; end = solver.nextLive(k, v, end)) {
+          int e = end / 2;
+          int at = solver.merged.find(end % 2 == 0 ? solver.edgeU[e] : solver.edgeV[e]);
+          if (at != v || solver.merged.find(v) != v) {
+            return false;
+          }
+          seen[e] += 1;
+        }
+      }
+    }
+    for (int e = 0; e < seen.length; e++) {
+      boolean live = solver.status[e] == SpanningTreeSolver.FREE && solver.tree[e] != -1;
+      if (seen[e] != (live ? 2 : 0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  void testSpanningTreeSolver(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "Player must be 1 or 2"), "SpanningTreeSolver", 0);
+    t.checkException(new IllegalArgumentException("This solver plays for player 1"),
+        new SpanningTreeSolver(1), "chooseMove", new Board(5), 2);
+    
+    // on a fresh 5x5 board player 1's graph has the two board edges, two inner
+    // dots and five open cells, which with the virtual edge make two trees of three
+    SpanningTreeSolver solver = new SpanningTreeSolver(1);
+    BridgItWorld world = new BridgItWorld(5);
+    int first = solver.chooseMove(world.board, 1);
+    t.checkExpect(solver.winning, true);
+    t.checkExpect(solver.vertexCount, 4);
+    t.checkExpect(solver.edgeU.length, 6);
+    t.checkExpect(world.board.playable(first), true);
+    
+    // the answers follow the opponent's moves without splitting the trees again
+    world.play(first);
+    int reply = solver.status[solver.edgeOf[6]] == SpanningTreeSolver.FREE ? 6 : 8;
+    world.play(reply);
+    world.play(solver.chooseMove(world.board, 1));
+    t.checkExpect(solver.builds, 1);
+    
+    // against random replies and against alpha-beta it always wins as player 1
+    Random rand = new Random(11);
+    MoveStrategy randomMoves = (b, p) -> {
+      ArrayList<Integer> open = new ArrayList<Integer>();
+      for (int i = 0; i < b.cellCount(); i++) {
+        if (b.playable(i)) {
+          open.add(i);
+        }
+      }
+      return open.get(rand.nextInt(open.size()));
+    };
+    boolean alwaysWins = true;
+    int size = 5;
+    for (int game = 0; game < 12; game++) {
+      BridgItWorld match = new BridgItWorld(size);
+      SpanningTreeSolver perfect = new SpanningTreeSolver(1);
+      match.setComputer(1, perfect);
+      match.setComputer(2, game % 4 == 0 ? new AlphaBetaPlayer(20, 12) : randomMoves);
+      while (!match.wins.hasWon(1) && !match.wins.hasWon(2)) {
+        this.tickUntilMoved(match);
+      }
+      alwaysWins = alwaysWins && match.wins.hasWon(1) && perfect.builds == 1;
+      size = size == 11 ? 5 : size + 2;
+    }
+    t.checkExpect(alwaysWins, true);
+    
+    // when the board changes behind its back it splits the trees again
+    BridgItWorld world2 = new BridgItWorld(7);
+    SpanningTreeSolver solver2 = new SpanningTreeSolver(1);
+    world2.play(solver2.chooseMove(world2.board, 1));
+    world2.play(randomMoves.chooseMove(world2.board, 2));
+    world2.play(randomMoves.chooseMove(world2.board, 1));
+    world2.play(randomMoves.chooseMove(world2.board, 2));
+    solver2.chooseMove(world2.board, 1);
+    t.checkExpect(solver2.builds, 2);
+    
+    // the edge lists at each vertex hold exactly the edges still in the trees, at
+    // the vertices their ends are contracted into, all through a game on 21x21
+    BridgItGame large = new BridgItGame(21);
+    SpanningTreeSolver solver3 = new SpanningTreeSolver(1);
+    boolean listed = true;
+    while (large.winner() == 0) {
+      large.play(large.currentPlayer == 1
+          ? solver3.chooseMove(large.board, 1) : randomMoves.chooseMove(large.board, 2));
+      listed = listed && this.treeListsMatch(solver3);
+    }
+    t.checkExpect(listed, true);
+    t.checkExpect(large.winner(), 1);
+    t.checkExpect(solver3.builds, 1);
+    
+    // as player 2 it cannot force a win and falls back to an open cell
+    SpanningTreeSolver second = new SpanningTreeSolver(2);
+    BridgItWorld world3 = new BridgItWorld(7);
+    world3.play(24);
+    int defense = second.chooseMove(world3.board, 2);
+    t.checkExpect(second.winning, false);
+    t.checkExpect(world3.board.playable(defense), true);
+    
+    // and it follows the rest of the game without splitting the forests again
+    world3.play(defense);
+    boolean followed = true;
+    while (!world3.wins.hasWon(1) && !world3.wins.hasWon(2)) {
+      int answer = world3.currentPlayer == 2
+          ? second.chooseMove(world3.board, 2) : randomMoves.chooseMove(world3.board, 1);
+      followed = followed && world3.play(answer) && this.treeListsMatch(second);
+    }
+    t.checkExpect(followed, true);
+    t.checkExpect(second.builds, 1);
+  }
+  
+  void testTranspositionTable(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "A table must have between 2^1 and 2^28 slots"), "TranspositionTable", 0);
+    TranspositionTable table = new TranspositionTable(4);
+    t.checkExpect(table.find(5L), -1);
+    t.checkExpect(table.moveFor(5L), -1);
+    
+    table.store(5L, 3, 10, 0, TranspositionTable.EXACT, 7);
+    t.checkExpect(table.find(5L), 5);
+    t.checkExpect(table.moveFor(5L), 7);
+    t.checkExpect(table.valueAt(5, 2), 10);
+    
+    // a shallower result for the same position does not replace a deeper one
+    table.store(5L, 2, 20, 0, TranspositionTable.EXACT, 8);
+    t.checkExpect(table.moveFor(5L), 7);
+    // a different position in the same slot does
+    table.store(21L, 1, 30, 0, TranspositionTable.LOWER, 9);
+    t.checkExpect(table.find(5L), -1);
+    t.checkExpect(table.moveFor(21L), 9);
+    
+    // wins are kept relative to the stored position
+    table.store(37L, 1, AlphaBetaPlayer.WIN - 3, 2, TranspositionTable.EXACT, 1);
+    t.checkExpect(table.valueAt(table.find(37L), 0), AlphaBetaPlayer.WIN - 1);
+    t.checkExpect(table.valueAt(table.find(37L), 4), AlphaBetaPlayer.WIN - 5);
+    
+    table.clear();
+    t.checkExpect(table.find(37L), -1);
+  }
+  
+  void testZobrist(Tester t) {
+    Board board = new Board(5);
+    Zobrist zobrist = new Zobrist(25, 1);
+    t.checkExpect(zobrist.hash(board, 1), 0L);
+    t.checkExpect(zobrist.hash(board, 2), zobrist.playerTwoToMove);
+    t.checkExpect(new Zobrist(25, 1).key(1, 6), zobrist.key(1, 6));
+    t.checkExpect(zobrist.isOpen(board, 6), true);
+    t.checkExpect(zobrist.isOpen(board, 5), false);
+    
+    board.claim(6, 1);
+    board.claim(12, 2);
+    t.checkExpect(zobrist.hash(board, 1), zobrist.key(1, 6) ^ zobrist.key(2, 12));
+  }
+  
+  void testComputerOpponent(Tester t) {
+    BridgItWorld world = new BridgItWorld(5);
+    t.checkException(new IllegalArgumentException("Player must be 1 or 2"),
+        world, "setComputer", 3, new AlphaBetaPlayer());
+    world.setComputer(2, new AlphaBetaPlayer(100, 10));
+    
+    // nothing happens on a tick while a person is to move
+    world.onTick();
+    t.checkExpect(world.currentPlayer, 1);
+    world.onMouseClicked(new Posn(60, 60));
+    t.checkExpect(world.currentPlayer, 2);
+    
+    // clicks are ignored on the computer's turn
+    world.onMouseClicked(new Posn(160, 60));
+    t.checkExpect(world.board.taken(8), false);
+    
+    // the first tick only starts the computer thinking
+    world.onTick();
+    t.checkExpect(world.currentPlayer, 2);
+    this.tickUntilMoved(world);
+    t.checkExpect(world.currentPlayer, 1);
+    t.checkExpect(world.board.count(2), 7);
+  }
+  
+  // ticks the world until the computer to move has made its move
+  void tickUntilMoved(BridgItWorld world) {
+    int before = world.version;
+    for (int i = 0; i < 100000 && world.version == before; i++) {
+      world.onTick();
+      if (world.version == before) {
+        try {
+          Thread.sleep(1);
+        }
+        catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+  }
+  
+  void testBoardSymmetry(Tester t) {
+    BoardSymmetry symmetry = new BoardSymmetry(5);
+    Board board = new Board(5);
+    t.checkExpect(symmetry.maps[1][board.index(1, 0)], board.index(3, 0));
+    t.checkExpect(symmetry.maps[2][board.index(1, 0)], board.index(1, 4));
+    t.checkExpect(symmetry.maps[3][board.index(1, 0)], board.index(3, 4));
+    // every symmetry keeps the dots of both players where they were, and undoes itself
+    boolean keeps = true;
+    for (int s = 0; s < BoardSymmetry.COUNT; s++) {
+      for (int i = 0; i < 25; i++) {
+        keeps = keeps
+            && board.startOwner(symmetry.maps[s][i]) == board.startOwner(i)
+            && symmetry.maps[s][symmetry.maps[s][i]] == i;
+      }
+    }
+    t.checkExpect(keeps, true);
+    
+    // mirror images have the same canonical hash, which is the hash the game keeps
+    // for the image that is canonical
+    long[] hashes = new long[BoardSymmetry.COUNT];
+    long[] mirrored = new long[BoardSymmetry.COUNT];
+    BridgItGame game = new BridgItGame(5);
+    BridgItGame mirror = new BridgItGame(5);
+    game.play(board.index(1, 1));
+    mirror.play(board.index(3, 1));
+    symmetry.hashes(game.board, game.currentPlayer, hashes);
+    symmetry.hashes(mirror.board, mirror.currentPlayer, mirrored);
+    t.checkExpect(hashes[0], game.hash);
+    t.checkExpect(hashes[1], mirror.hash);
+    t.checkExpect(hashes[BoardSymmetry.canonical(hashes)],
+        mirrored[BoardSymmetry.canonical(mirrored)]);
+    
+    // the game keeps the hashes under every symmetry up to date through moves,
+    // undos and resets once they are asked for
+    t.checkExpect(game.symmetricHashes(), hashes);
+    Random rand = new Random(7);
+    boolean kept = true;
+    for (int i = 0; i < 200; i++) {
+      if (rand.nextInt(3) == 0) {
+        game.undo();
+      }
+      else if (!game.wins.hasWon(1) && !game.wins.hasWon(2)) {
+        game.play(rand.nextInt(25));
+      }
+      else {
+        game.reset();
+      }
+      symmetry.hashes(game.board, game.currentPlayer, hashes);
+      kept = kept && Arrays.equals(game.symmetricHashes(), hashes)
+          && game.symmetricHashes()[0] == game.hash;
+    }
+    t.checkExpect(kept, true);
+  }
+  
+  void testTablebase(Tester t) throws IOException {
+    // the first player wins every small board
+    TablebaseBuilder builder = new TablebaseBuilder(5);
+    t.checkExpect(builder.solveAll(), 1);
+    t.checkExpect(builder.entries, 20);
+    Path file = Files.createTempFile("bridgit", ".book");
+    builder.write(file);
+    Tablebase book = new Tablebase(file);
+    t.checkExpect(book.size, 5);
+    t.checkExpect(book.entries, 20);
+    
+    // the book's move wins against every reply, and the book knows every position
+    BridgItGame game = new BridgItGame(5);
+    t.checkExpect(book.winner(game.board, 1), 1);
+    int first = book.bestMove(game.board, 1);
+    t.checkExpect(game.play(first), true);
+    boolean known = true;
+    for (int reply = 0; reply < 25; reply++) {
+      if (game.play(reply)) {
+        known = known
+            && (game.wins.hasWon(2) || book.winner(game.board, 1) == 1)
+            && book.bestMove(game.board, 1) != -1;
+        game.undo();
+      }
+    }
+    t.checkExpect(known, true);
+    t.checkExpect(book.winner(game.board, 2), 1);
+    t.checkExpect(book.bestMove(game.board, 2), -1);
+    
+    // a mirror image gets the mirror image of the move
+    BoardSymmetry symmetry = new BoardSymmetry(5);
+    BridgItGame left = new BridgItGame(5);
+    BridgItGame right = new BridgItGame(5);
+    left.play(6);
+    right.play(symmetry.maps[1][6]);
+    t.checkExpect(book.winner(left.board, 2), book.winner(right.board, 2));
+    int mirrored = book.bestMove(right.board, 2);
+    t.checkExpect(book.bestMove(left.board, 2),
+        mirrored == -1 ? -1 : symmetry.maps[1][mirrored]);
+    t.checkExpect(book.lookup(new Board(7), 1), Tablebase.MISSING);
+    t.checkExpect(book.bestMove(new BridgItGame(7)), -1);
+    // a game's own hashes find the same move as the board
+    t.checkExpect(book.bestMove(right), book.bestMove(right.board, 2));
+    t.checkExpect(book.bestMove(left), book.bestMove(left.board, 2));
+    
+    // the computer plays the book's move on the first tick, without searching
+    BridgItWorld world = new BridgItWorld(5);
+    world.setComputer(1, new RandomStrategy(3));
+    world.setBook(book);
+    world.onTick();
+    t.checkExpect(world.board.owner(first), 1);
+    t.checkExpect(world.computer[1].requests, 0L);
+    // the book's answer is kept for the position it was looked up in
+    world.setComputer(2, new RandomStrategy(4));
+    world.onTick();
+    t.checkExpect(world.bookVersion, world.version);
+    t.checkExpect(world.bookMove, book.bestMove(world.game));
+    world.setComputer(2, null);
+    world.setComputer(1, null);
+    t.checkException(new IllegalArgumentException("The book is for another board size"),
+        new BridgItWorld(7), "setBook", book);
+    
+    // larger boards get the spanning-tree solver's openings for player 1
+    TablebaseBuilder openings = new TablebaseBuilder(9);
+    openings.openings(1);
+    openings.write(file);
+    Tablebase opening = new Tablebase(file);
+    t.checkExpect(opening.bestMove(new Board(9), 1),
+        new SpanningTreeSolver(1).chooseMove(new Board(9), 1));
+    t.checkExpect(opening.winner(new Board(9), 1), 1);
+    t.checkExpect(opening.bestMove(new Board(9), 2), -1);
+    t.checkException(new IllegalArgumentException(
+        "Boards larger than 7 can only have an opening book"), openings, "solveAll");
+    
+    Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    t.checkConstructorException(new IllegalArgumentException("Not a tablebase file"),
+        "Tablebase", file);
+    Files.delete(file);
+  }
+  
+  void testAsyncMoveProvider(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException(
+        "The time budget must be positive"), "AsyncMoveProvider", new RandomStrategy(1), 0L);
+    
+    // the move comes back on a later poll, found on a copy of the board
+    Board board = new Board(5);
+    AsyncMoveProvider provider = new AsyncMoveProvider(new AlphaBetaPlayer(50, 8), 5000);
+    t.checkExpect(provider.poll(board, 1), AsyncMoveProvider.THINKING);
+    int move = AsyncMoveProvider.THINKING;
+    while (move == AsyncMoveProvider.THINKING) {
+      move = provider.poll(board, 1);
+    }
+    t.checkExpect(board.playable(move), true);
+    t.checkExpect(provider.requests, 1L);
+    
+    // a search for a position that has changed is thrown away and started again
+    CountDownLatch release = new CountDownLatch(1);
+    AsyncMoveProvider slow = new AsyncMoveProvider((b, player) -> {
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        return -1;
+      }
+      return 6;
+    }, 5000);
+    t.checkExpect(slow.poll(board, 1), AsyncMoveProvider.THINKING);
+    board.claim(6, 2);
+    t.checkExpect(slow.poll(board, 1), AsyncMoveProvider.THINKING);
+    t.checkExpect(slow.cancelled, 1L);
+    t.checkExpect(slow.requests, 2L);
+    
+    // past the budget it gives up and plays a random move instead
+    AsyncMoveProvider hurried = new AsyncMoveProvider((b, player) -> {
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        return -1;
+      }
+      return 6;
+    }, 1);
+    t.checkExpect(hurried.poll(board, 1), AsyncMoveProvider.THINKING);
+    try {
+      Thread.sleep(5);
+    }
+    catch (InterruptedException e) {
+      return;
+    }
+    int fallback = hurried.poll(board, 1);
+    t.checkExpect(board.playable(fallback), true);
+    t.checkExpect(hurried.timeouts, 1L);
+    release.countDown();
+    slow.shutdown();
+    hurried.shutdown();
+    
+    // a search queued behind one that ignores its cancellation gets its whole budget
+    AsyncMoveProvider stubborn = new AsyncMoveProvider((b, player) -> {
+      long end = System.nanoTime() + 400000000L;
+      while (System.nanoTime() < end) {
+        Thread.onSpinWait();
+      }
+      return 8;
+    }, 600);
+    Board changing = new Board(5);
+    t.checkExpect(stubborn.poll(changing, 1), AsyncMoveProvider.THINKING);
+    try {
+      Thread.sleep(100);
+    }
+    catch (InterruptedException e) {
+      return;
+    }
+    changing.claim(6, 2);
+    int answer = AsyncMoveProvider.THINKING;
+    while (answer == AsyncMoveProvider.THINKING) {
+      answer = stubborn.poll(changing, 1);
+    }
+    t.checkExpect(answer, 8);
+    t.checkExpect(stubborn.timeouts, 0L);
+    stubborn.shutdown();
+    
+    // the searches stop soon after their thread is interrupted, long before their
+    // budgets run out
+    Board large = new Board(21);
+    long before = System.nanoTime();
+    Thread.currentThread().interrupt();
+    int searched = new AlphaBetaPlayer(60000, 16).chooseMove(large, 1);
+    Thread.currentThread().interrupt();
+    int played = new MonteCarloPlayer(60000, 1).chooseMove(large, 1);
+    Thread.interrupted();
+    t.checkExpect(System.nanoTime() - before < 10000000000L, true);
+    t.checkExpect(large.playable(searched) && large.playable(played), true);
+    AsyncMoveProvider cancelled = new AsyncMoveProvider(new MonteCarloPlayer(60000, 2), 60000);
+    cancelled.poll(large, 1);
+    try {
+      Thread.sleep(50);
+      cancelled.shutdown();
+      t.checkExpect(cancelled.executor.awaitTermination(10, TimeUnit.SECONDS), true);
+    }
+    catch (InterruptedException e) {
+      return;
+    }
+    
+    // a strategy that fails reports it on the world's thread
+    AsyncMoveProvider broken = new AsyncMoveProvider((b, player) -> {
+      throw new IllegalArgumentException("no moves today");
+    }, 5000);
+    broken.poll(board, 1);
+    while (!broken.pending.isDone()) {
+      Thread.yield();
+    }
+    t.checkException(new IllegalStateException("The strategy failed"),
+        broken, "poll", board, 1);
+    broken.shutdown();
+  }
+  
   void testBridgItWorld(Tester t) {
     BridgItWorld w = new BridgItWorld(11);
-    w.bigBang(w.boardSize * 50, w.boardSize * 50, 0.05);
+    w.bigBang(w.view.width, w.view.height, 0.05);
   }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+
+// the rules of the game without a window: a board, whose turn it is and who has won
+// BridgItWorld plays through one of these, and batch runs and servers can play
+// many of them at once, reusing each one with reset
+// every move is kept on a stack, so moves can be taken back and made again in
+// constant time without copying the board
+class BridgItGame {
+  int boardSize;
+  Board board;
+  WinDetector wins;
+  // the cells that would win at once for each player, or null until they are first
+  // asked for; then kept up to date with every move and undo from move threatsFrom
+  ThreatTracker threats;
+  int threatsFrom;
+  int currentPlayer;
+  // the Zobrist hash of the position, with the player to move, kept up to date
+  // with every move and undo
+  Zobrist zobrist;
+  long hash;
+  // the hash of the position under every board symmetry, or null until first asked
+  // for; then kept up to date with every move and undo like the hash
+  BoardSymmetry symmetry;
+  long[] symmetricHashes;
+  // moves[0] to moves[moveCount - 1] are the moves made, in order, and the moves
+  // after them up to redoCount are the ones undone since the last new move
+  int[] moves;
+  // marks[i] is the win detector's mark from just before moves[i] was made
+  int[] marks;
+  // threatMarks[i] is the threat tracker's mark from just before moves[i] was made
+  int[] threatMarks;
+  int moveCount;
+  int redoCount;
+  // where moves are appended as they are made, or null when not recording
+  GameRecorder recorder;
+
+  // constructs a game on a new board of the given size, with player 1 to move
+  BridgItGame(int boardSize) {
+    if (boardSize < 3 || boardSize % 2 == 0) {
+      throw new IllegalArgumentException(
+          "Board size must be an odd number greater than 3");
+    }
+    this.boardSize = boardSize;
+    this.board = new Board(boardSize);
+    this.wins = new WinDetector(this.board);
+    this.threats = null;
+    this.currentPlayer = 1;
+    this.zobrist = new Zobrist(this.board);
+    this.hash = 0L;
+    this.symmetry = null;
+    this.symmetricHashes = null;
+    this.moves = new int[this.board.cellCount()];
+    this.marks = new int[this.board.cellCount()];
+    this.threatMarks = new int[this.board.cellCount()];
+    this.moveCount = 0;
+    this.redoCount = 0;
+    this.recorder = null;
+  }
+
+  // records this game and every later one with the given recorder
+  // must start before the first move, since a record is a list of moves
+  // a game's record is started by its first move, so games without moves are
+  // left out
+  void record(GameRecorder recorder) {
+    if (this.moveCount != 0) {
+      throw new IllegalStateException("Recording must start before the first move");
+    }
+    this.recorder = recorder;
+  }
+
+  // ends the record of this game and writes it out, if it is being recorded
+  void endRecording() {
+    if (this.recorder != null) {
+      if (this.moveCount != 0) {
+        this.recorder.endGame();
+      }
+      this.recorder = null;
+    }
+  }
+
+  // determines if the current player may claim the cell at the given index: it is
+  // on the board, ValidMove allows it and it is free
+  boolean allows(int index) {
+    return index >= 0
+        && index < this.board.cellCount()
+        && new ValidMove().allows(this.board, index)
+        && !this.board.taken(index);
+  }
+
+  // claims the cell at the given index for the current player and passes the turn,
+  // if the move is allowed
+  // a new move forgets the moves that could have been redone
+  // returns whether the move was made
+  boolean play(int index) {
+    if (this.allows(index)) {
+      this.playAllowed(index);
+      return true;
+    }
+    return false;
+  }
+
+  // makes a new move that allows has already accepted, forgetting the moves that
+  // could have been redone
+  void playAllowed(int index) {
+    this.make(index);
+    this.redoCount = this.moveCount;
+  }
+
+  // claims the given free cell for the current player and pushes the move
+  void make(int index) {
+    this.marks[this.moveCount] = this.wins.mark();
+    if (this.threats != null) {
+      this.threatMarks[this.moveCount] = this.threats.mark();
+    }
+    this.moves[this.moveCount] = index;
+    this.moveCount += 1;
+    this.board.claim(index, this.currentPlayer);
+    this.wins.claim(index);
+    if (this.threats != null) {
+      this.threats.claim(index);
+    }
+    this.hash ^= this.zobrist.key(this.currentPlayer, index) ^ this.zobrist.playerTwoToMove;
+    if (this.symmetry != null) {
+      this.symmetry.toggle(this.symmetricHashes, index, this.currentPlayer);
+    }
+    this.currentPlayer = 3 - this.currentPlayer;
+    if (this.recorder != null) {
+      if (this.moveCount == 1) {
+        this.recorder.startGame(this.boardSize);
+      }
+      this.recorder.move(index);
+    }
+  }
+
+  // takes back the last move, freeing its cell and passing the turn back
+  // a record is a list of moves that were kept, so a recorded game cannot undo
+  // returns whether a move was taken back
+  boolean undo() {
+    if (this.moveCount == 0 || this.recorder != null) {
+      return false;
+    }
+    this.moveCount -= 1;
+    // only free cells can be claimed, so the cell goes back to being free
+    this.board.claim(this.moves[this.moveCount], 0);
+    this.wins.undo(this.marks[this.moveCount]);
+    if (this.threats != null) {
+      this.undoThreats();
+    }
+    this.currentPlayer = 3 - this.currentPlayer;
+    this.hash ^= this.zobrist.key(this.currentPlayer, this.moves[this.moveCount])
+        ^ this.zobrist.playerTwoToMove;
+    if (this.symmetry != null) {
+      this.symmetry.toggle(this.symmetricHashes, this.moves[this.moveCount], this.currentPlayer);
+    }
+    return true;
+  }
+
+  // takes the threat tracker back past the move just undone, working it out again
+  // if that move was made before the tracker was
+  void undoThreats() {
+    if (this.moveCount >= this.threatsFrom) {
+      this.threats.undo(this.threatMarks[this.moveCount]);
+    }
+    else {
+      this.threats.reset();
+      this.threatsFrom = this.moveCount;
+    }
+  }
+
+  // the cells that would win at once for each player, tracked from the first time
+  // they are asked for, so that games that never ask pay nothing for them
+  ThreatTracker threats() {
+    if (this.threats == null) {
+      this.threats = new ThreatTracker(this.wins);
+      this.threatsFrom = this.moveCount;
+    }
+    return this.threats;
+  }
+
+  // the hash of the position under every board symmetry, worked out from the board
+  // the first time and then kept up to date
+  long[] symmetricHashes() {
+    if (this.symmetry == null) {
+      this.symmetry = new BoardSymmetry(this.boardSize);
+      this.symmetricHashes = new long[BoardSymmetry.COUNT];
+      this.symmetry.hashes(this.board, this.currentPlayer, this.symmetricHashes);
+    }
+    return this.symmetricHashes;
+  }
+
+  // makes the last move taken back again
+  // returns whether there was one to make
+  boolean redo() {
+    if (this.moveCount == this.redoCount) {
+      return false;
+    }
+    this.make(this.moves[this.moveCount]);
+    return true;
+  }
+
+  // the player who has connected their edges, or 0 if nobody has yet
+  int winner() {
+    if (this.wins.hasWon(1)) {
+      return 1;
+    }
+    else if (this.wins.hasWon(2)) {
+      return 2;
+    }
+    return 0;
+  }
+
+  // plays the given strategies against each other until somebody wins
+  // returns the winner, or 0 if a strategy had no move to make
+  int playOut(MoveStrategy first, MoveStrategy second) {
+    int winner = this.winner();
+    while (winner == 0) {
+      MoveStrategy strategy = this.currentPlayer == 1 ? first : second;
+      int index = strategy.chooseMove(this.board, this.currentPlayer);
+      if (index == -1 || !this.play(index)) {
+        return 0;
+      }
+      winner = this.winner();
+    }
+    return winner;
+  }
+
+  // puts the game back to its starting position without allocating a new board
+  // a game being recorded ends its record, unless no move was made
+  void reset() {
+    this.board.reset();
+    this.wins.reset();
+    if (this.threats != null) {
+      // a log that starts at the starting position is cheaper to roll back than
+      // to work out again
+      if (this.threatsFrom == 0) {
+        this.threats.undo(0);
+      }
+      else {
+        this.threats.reset();
+        this.threatsFrom = 0;
+      }
+    }
+    this.currentPlayer = 1;
+    this.hash = 0L;
+    if (this.symmetry != null) {
+      Arrays.fill(this.symmetricHashes, 0L);
+    }
+    if (this.recorder != null && this.moveCount != 0) {
+      this.recorder.endGame();
+    }
+    this.moveCount = 0;
+    this.redoCount = 0;
+  }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// builds the linked Cell graph of a Board in time linear in the number of cells
+// every neighbor is found from the cell's index, and boards with enough cells
+// are built in parallel, one band of rows per fork-join task
+class CellGraphBuilder {
+  Board board;
+  Cell[] cells;
+  // boards with fewer cells than this are built on the calling thread
+  int parallelThreshold;
+  // the most rows a single task builds before it splits its band in two
+  int bandRows;
+
+  // constructs a builder for the given board with the default tuning
+  CellGraphBuilder(Board board) {
+    this(board, 1 << 16, 16);
+  }
+
+  // constructs a builder for the given board
+  CellGraphBuilder(Board board, int parallelThreshold, int bandRows) {
+    if (bandRows < 1) {
+      throw new IllegalArgumentException("A band must have at least one row");
+    }
+    this.board = board;
+    this.cells = new Cell[board.cellCount()];
+    this.parallelThreshold = parallelThreshold;
+    this.bandRows = bandRows;
+  }
+
+  // builds the cells of the board and links each to its neighbors
+  ArrayList<Cell> build() {
+    if (this.cells.length < this.parallelThreshold) {
+      this.makeRows(0, this.board.size);
+      this.linkRows(0, this.board.size);
+    }
+    else {
+      // every cell must exist before any band links to the band below it
+      ForkJoinPool.commonPool().invoke(new BuildBandTask(this, 0, this.board.size, false));
+      ForkJoinPool.commonPool().invoke(new BuildBandTask(this, 0, this.board.size, true));
+    }
+    return new ArrayList<Cell>(Arrays.asList(this.cells));
+  }
+
+  // creates the cells in the rows [from, to)
+  void makeRows(int from, int to) {
+    for (int i = from * this.board.size; i < to * this.board.size; i++) {
+      this.cells[i] = new Cell(this.board.owner(i), this.board.x(i), this.board.y(i));
+    }
+  }
+
+  // links every cell in the rows [from, to) to its right and bottom neighbors
+  // each link is written by the band that owns the cell above or to the left,
+  // so no two bands ever write the same field
+  void linkRows(int from, int to) {
+    for (int i = from * this.board.size; i < to * this.board.size; i++) {
+      int right = this.board.neighbor(i, 1);
+      int bottom = this.board.neighbor(i, 2);
+      if (right != -1) {
+        this.cells[i].setRight(this.cells[right]);
+      }
+      if (bottom != -1) {
+        this.cells[i].setBottom(this.cells[bottom]);
+      }
+    }
+  }
+}
+
+// a fork-join task that creates or links the cells of a band of rows,
+// splitting the band in half until it is small enough to do directly
+class BuildBandTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  CellGraphBuilder builder;
+  int from;
+  int to;
+  boolean link;
+
+  // constructs a task for the rows [from, to)
+  BuildBandTask(CellGraphBuilder builder, int from, int to, boolean link) {
+    this.builder = builder;
+    this.from = from;
+    this.to = to;
+    this.link = link;
+  }
+
+  // builds this band, or splits it between two subtasks
+  protected void compute() {
+    if (this.to - this.from <= this.builder.bandRows) {
+      if (this.link) {
+        this.builder.linkRows(this.from, this.to);
+      }
+      else {
+        this.builder.makeRows(this.from, this.to);
+      }
+    }
+    else {
+      int middle = (this.from + this.to) / 2;
+      invokeAll(
+          new BuildBandTask(this.builder, this.from, middle, this.link),
+          new BuildBandTask(this.builder, middle, this.to, this.link));
+    }
+  }
+}
@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+// scores a position by how many more cells each player needs to connect their
+// edges: a player's distance is the length of the cheapest path between their
+// edges where their own cells cost 0, free cells cost 1, and the other player's
+// cells cannot be crossed
+// the distances of every cell from each player's first edge are kept, along with
+// the tree of shortest paths, so that when one cell changes only the cells whose
+// paths went through it are solved again
+// every buffer is allocated once per board size and reused
+class DistanceEvaluator {
+  // the distance of a cell that cannot be reached
+  static final int UNREACHABLE = Integer.MAX_VALUE;
+  // the cost of a cell that cannot be crossed
+  static final byte BLOCKED = -1;
+
+  Board board;
+  int size;
+  // indexed by player, so index 0 is unused
+  int[][] dist;
+  // the cell a cell's shortest path came from, -1 on the first edge and -2 when
+  // the cell cannot be reached
+  int[][] parent;
+  byte[][] cost;
+
+  // a double-ended queue for 0-1 breadth first search, as a ring buffer
+  int[] queue;
+  int head;
+  int tail;
+  // the cells whose paths are being solved again
+  int[] affected;
+  int affectedCount;
+
+  // constructs an evaluator for the given board and solves it
+  DistanceEvaluator(Board board) {
+    this.board = null;
+    this.solve(board);
+  }
+
+  // solves every distance on the given board from scratch
+  // buffers are only allocated when the board size has changed
+  void solve(Board board) {
+    int count = board.cellCount();
+    if (this.board == null || this.board.cellCount() != count) {
+      this.dist = new int[3][count];
+      this.parent = new int[3][count];
+      this.cost = new byte[3][count];
+      this.queue = new int[Integer.highestOneBit(count) * 4];
+      this.affected = new int[count];
+    }
+    this.board = board;
+    this.size = board.size;
+    for (int player = 1; player <= 2; player++) {
+      Arrays.fill(this.dist[player], UNREACHABLE);
+      Arrays.fill(this.parent[player], -2);
+      this.head = 0;
+      this.tail = 0;
+      for (int i = 0; i < count; i++) {
+        this.cost[player][i] = this.costOf(player, i);
+        if (this.onFirstEdge(player, i) && this.cost[player][i] != BLOCKED) {
+          this.dist[player][i] = this.cost[player][i];
+          this.parent[player][i] = -1;
+          this.push(i, this.cost[player][i]);
+        }
+      }
+      this.relax(player);
+    }
+  }
+
+  // what the cell at the given index costs the given player as the board is now
+  byte costOf(int player, int index) {
+    int owner = this.board.owner(index);
+    if (owner == player) {
+      return 0;
+    }
+    else if (owner == 0 && this.board.interior(index)) {
+      return 1;
+    }
+    return BLOCKED;
+  }
+
+  // is the cell on the edge the given player's paths start from
+  boolean onFirstEdge(int player, int index) {
+    return player == 1 ? this.board.x(index) == 0 : this.board.y(index) == 0;
+  }
+
+  // adds a cell to the queue, at the front when the step to it was free
+  void push(int index, int step) {
+    if (this.tail - this.head == this.queue.length) {
+      int[] bigger = new int[this.queue.length * 2];
+      for (int i = this.head; i < this.tail; i++) {
+        bigger[i - this.head] = this.queue[i & (this.queue.length - 1)];
+      }
+      this.tail -= this.head;
+      this.head = 0;
+      this.queue = bigger;
+    }
+    int mask = this.queue.length - 1;
+    if (step == 0) {
+      this.head -= 1;
+      this.queue[this.head & mask] = index;
+    }
+    else {
+      this.queue[this.tail & mask] = index;
+      this.tail += 1;
+    }
+  }
+
+  // lowers the distances of the cells next to queued cells until nothing changes
+  void relax(int player) {
+    int[] dist = this.dist[player];
+    byte[] cost = this.cost[player];
+    int mask = this.queue.length - 1;
+    while (this.head != this.tail) {
+      int u = this.queue[this.head & mask];
+      this.head += 1;
+      for (int side = 0; side < 4; side++) {
+        int v = this.board.neighbor(u, side);
+        if (v != -1 && cost[v] != BLOCKED && dist[u] + cost[v] < dist[v]) {
+          dist[v] = dist[u] + cost[v];
+          this.parent[player][v] = u;
+          this.push(v, cost[v]);
+          mask = this.queue.length - 1;
+        }
+      }
+    }
+  }
+
+  // brings the distances up to date after the owner of the given cell changed
+  void update(int index) {
+    for (int player = 1; player <= 2; player++) {
+      byte before = this.cost[player][index];
+      byte after = this.costOf(player, index);
+      if (before == after) {
+        continue;
+      }
+      this.cost[player][index] = after;
+      if (after != BLOCKED && (before == BLOCKED || after < before)) {
+        this.lower(player, index);
+      }
+      else {
+        this.raise(player, index);
+      }
+    }
+  }
+
+  // the cell got cheaper, so only distances through it can go down
+  void lower(int player, int index) {
+    this.head = 0;
+    this.tail = 0;
+    if (this.seed(player, index)) {
+      this.push(index, 0);
+      this.relax(player);
+    }
+  }
+
+  // the cell got dearer or blocked, so every cell whose shortest path went
+  // through it is forgotten and solved again from the cells around it
+  void raise(int player, int index) {
+    int[] dist = this.dist[player];
+    int[] parent = this.parent[player];
+    if (dist[index] == UNREACHABLE) {
+      return;
+    }
+    // forget the subtree of shortest paths below the cell
+    this.affected[0] = index;
+    this.affectedCount = 1;
+    dist[index] = UNREACHABLE;
+    parent[index] = -2;
+    for (int next = 0; next < this.affectedCount; next++) {
+      int u = this.affected[next];
+      for (int side = 0; side < 4; side++) {
+        int v = this.board.neighbor(u, side);
+        if (v != -1 && parent[v] == u) {
+          dist[v] = UNREACHABLE;
+          parent[v] = -2;
+          this.affected[this.affectedCount] = v;
+          this.affectedCount += 1;
+        }
+      }
+    }
+    // start them again from their best neighbor that was not forgotten
+    this.head = 0;
+    this.tail = 0;
+    for (int k = 0; k < this.affectedCount; k++) {
+      int cell = this.affected[k];
+      if (this.seed(player, cell)) {
+        this.push(cell, 1);
+      }
+    }
+    this.relax(player);
+  }
+
+  // gives the cell the best distance it can get from its first edge or its
+  // neighbors, if that is better than the one it has
+  // returns whether the distance went down
+  boolean seed(int player, int index) {
+    byte c = this.cost[player][index];
+    if (c == BLOCKED) {
+      return false;
+    }
+    int[] dist = this.dist[player];
+    int best = dist[index];
+    int from = this.parent[player][index];
+    if (this.onFirstEdge(player, index) && c < best) {
+      best = c;
+      from = -1;
+    }
+    for (int side = 0; side < 4; side++) {
+      int u = this.board.neighbor(index, side);
+      if (u != -1 && dist[u] != UNREACHABLE && dist[u] + c < best) {
+        best = dist[u] + c;
+        from = u;
+      }
+    }
+    if (best < dist[index]) {
+      dist[index] = best;
+      this.parent[player][index] = from;
+      return true;
+    }
+    return false;
+  }
+
+  // the number of free cells the given player still has to claim to connect
+  // their edges, or UNREACHABLE if the other player has cut them off
+  int distance(int player) {
+    int best = UNREACHABLE;
+    for (int k = 0; k < this.size; k++) {
+      int cell = player == 1
+          ? this.board.index(this.size - 1, k)
+          : this.board.index(k, this.size - 1);
+      best = Math.min(best, this.dist[player][cell]);
+    }
+    return best;
+  }
+
+  // how much closer the given player is to connecting than the other player,
+  // where being cut off counts as needing one more cell than the board has
+  int evaluate(int player) {
+    int mine = Math.min(this.distance(player), this.board.cellCount());
+    int theirs = Math.min(this.distance(3 - player), this.board.cellCount());
+    return theirs - mine;
+  }
+}
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// the binary format of recorded games: a file is a run of games, and each game is
+//   varint boardSize, then varint (index + 1) for every move, then varint 0
+// varints are unsigned LEB128: seven bits per byte, low bits first, with the top
+// bit set on every byte but the last. A game missing its final 0 was cut off
+// while it was being written.
+
+// appends games to a record file as they are played
+// bytes are gathered in a buffer and written when the buffer fills or a game ends
+class GameRecorder {
+  FileChannel channel;
+  ByteBuffer buffer;
+
+  // opens the given file for appending, creating it if needed
+  GameRecorder(Path file) {
+    try {
+      this.channel = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.buffer = ByteBuffer.allocateDirect(1 << 16);
+  }
+
+  // begins a game on a board of the given size
+  void startGame(int boardSize) {
+    this.writeVarint(boardSize);
+  }
+
+  // records a claim of the cell at the given index
+  void move(int index) {
+    this.writeVarint(index + 1);
+  }
+
+  // marks the end of the current game and writes it out
+  void endGame() {
+    this.writeVarint(0);
+    this.flush();
+  }
+
+  // appends one unsigned varint
+  void writeVarint(int value) {
+    if (this.buffer.remaining() < 5) {
+      this.flush();
+    }
+    while ((value & ~0x7F) != 0) {
+      this.buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    this.buffer.put((byte) value);
+  }
+
+  // writes every buffered byte to the file
+  void flush() {
+    this.buffer.flip();
+    try {
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.buffer.clear();
+  }
+
+  // writes what is buffered and closes the file
+  void close() {
+    this.flush();
+    try {
+      this.channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// receives the games of a record file one event at a time
+interface GameVisitor {
+  // a game on a board of the given size begins
+  void startGame(int boardSize);
+
+  // the cell at the given index is claimed by the player to move
+  void move(int index);
+
+  // the game ends; finished is false if the file was cut off in the middle of it
+  void endGame(boolean finished);
+}
+
+// reads a record file through a memory-mapped window that slides along the file,
+// so files much larger than the heap can be scanned without copying them
+class GameReplay {
+  FileChannel channel;
+  long fileSize;
+  int windowSize;
+  MappedByteBuffer window;
+  long windowStart;
+  long position;
+
+  // opens the given file with a window of 64MB
+  GameReplay(Path file) {
+    this(file, 1 << 26);
+  }
+
+  // opens the given file with a window of the given number of bytes
+  GameReplay(Path file, int windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("The window must be at least one byte");
+    }
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.READ);
+      this.fileSize = this.channel.size();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.windowSize = windowSize;
+    this.window = null;
+    this.windowStart = 0;
+    this.position = 0;
+  }
+
+  // sends every game in the file to the given visitor and returns how many there were
+  // the file can be replayed any number of times
+  long forEach(GameVisitor visitor) {
+    this.window = null;
+    this.windowStart = 0;
+    this.position = 0;
+    long games = 0;
+    while (this.position < this.fileSize) {
+      int boardSize = this.readVarint();
+      if (boardSize == -1) {
+        // a size cut off by the end of the file starts no game
+        break;
+      }
+      if (boardSize < 3 || boardSize % 2 == 0) {
+        throw new IllegalArgumentException("Not a game record: bad board size " + boardSize);
+      }
+      visitor.startGame(boardSize);
+      games += 1;
+      boolean finished = false;
+      while (this.position < this.fileSize) {
+        int value = this.readVarint();
+        if (value == 0) {
+          finished = true;
+          break;
+        }
+        else if (value == -1) {
+          break;
+        }
+        visitor.move(value - 1);
+      }
+      visitor.endGame(finished);
+    }
+    return games;
+  }
+
+  // reads one unsigned varint at the current position, or returns -1 if it is cut
+  // off by the end of the file
+  int readVarint() {
+    int result = 0;
+    int shift = 0;
+    while (this.position < this.fileSize) {
+      byte b = this.readByte();
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+      shift += 7;
+      if (shift > 28) {
+        throw new IllegalArgumentException("Not a game record: a number is too long");
+      }
+    }
+    return -1;
+  }
+
+  // reads the byte at the current position, moving the window when it is past it
+  byte readByte() {
+    long offset = this.position - this.windowStart;
+    if (this.window == null || offset >= this.window.limit()) {
+      this.windowStart = this.position;
+      long length = Math.min(this.windowSize, this.fileSize - this.position);
+      try {
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.windowStart, length);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      offset = 0;
+    }
+    this.position += 1;
+    return this.window.get((int) offset);
+  }
+
+  // closes the file
+  void close() {
+    try {
+      this.channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// replays recorded games on a reused headless game and counts what happened
+class ReplayStatistics implements GameVisitor {
+  BridgItGame game;
+  long games;
+  long unfinished;
+  long moves;
+  long illegalMoves;
+  // wins[p] is the number of games player p won
+  long[] wins;
+
+  // constructs empty statistics
+  ReplayStatistics() {
+    this.game = null;
+    this.wins = new long[3];
+  }
+
+  // sets up a board of the given size, reusing the last one when the size matches
+  public void startGame(int boardSize) {
+    if (this.game == null || this.game.boardSize != boardSize) {
+      this.game = new BridgItGame(boardSize);
+    }
+    else {
+      this.game.reset();
+    }
+    this.games += 1;
+  }
+
+  // replays the move
+  public void move(int index) {
+    this.moves += 1;
+    if (!this.game.play(index)) {
+      this.illegalMoves += 1;
+    }
+  }
+
+  // counts the winner of the game
+  public void endGame(boolean finished) {
+    if (!finished) {
+      this.unfinished += 1;
+    }
+    this.wins[this.game.winner()] += 1;
+  }
+}
@@ -0,0 +1,485 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// hosts many matches at once over a line-based protocol on a local socket
+// one thread runs an NIO selector over every connection, and each match is an
+// actor: a mailbox of messages that a shared pool of threads works through one
+// message at a time, so a match never needs a lock or a thread of its own
+// the protocol, one command per line:
+//   NEW size          starts a match and holds both seats until somebody joins
+//                     -> MATCH id
+//   JOIN id           takes player 2's seat of a match
+//                     -> JOINED id 2, to both players
+//   MOVE id index     claims a cell for the player to move, if this connection
+//                     holds their seat
+//                     -> MOVED id index winner, to both players (winner 0 while
+//                        the game goes on), or ERROR id reason to the mover
+//   QUIT              closes the connection, which ends every match it plays in
+//                     -> ABANDONED id, to the other player of each
+// run with: java GameServer [port]
+class GameServer {
+  // the largest board a match may be played on
+  static final int MAX_SIZE = 101;
+
+  Selector selector;
+  ServerSocketChannel server;
+  ExecutorService actors;
+  ConcurrentHashMap<Integer, MatchActor> matches;
+  AtomicInteger nextMatch;
+  // connections with replies waiting to be written, handed to the selector thread
+  ConcurrentLinkedQueue<ServerConnection> writers;
+  Thread loop;
+  volatile boolean running;
+  AtomicLong moves;
+  AtomicLong validationNanos;
+  AtomicLong slowestValidation;
+
+  // constructs a server listening on the given local port, or on any free port
+  // if the port is 0
+  GameServer(int port) {
+    try {
+      this.selector = Selector.open();
+      this.server = ServerSocketChannel.open();
+      this.server.bind(new InetSocketAddress("127.0.0.1", port));
+      this.server.configureBlocking(false);
+      this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.actors = new ForkJoinPool();
+    this.matches = new ConcurrentHashMap<Integer, MatchActor>();
+    this.nextMatch = new AtomicInteger();
+    this.writers = new ConcurrentLinkedQueue<ServerConnection>();
+    this.moves = new AtomicLong();
+    this.validationNanos = new AtomicLong();
+    this.slowestValidation = new AtomicLong();
+  }
+
+  public static void main(String[] args) {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7878;
+    GameServer server = new GameServer(port);
+    server.start();
+    System.out.println("Listening on port " + server.port());
+  }
+
+  // the port the server is listening on
+  int port() {
+    return this.server.socket().getLocalPort();
+  }
+
+  // starts the selector thread
+  void start() {
+    this.running = true;
+    this.loop = new Thread(this::serve, "bridgit-server");
+    this.loop.start();
+  }
+
+  // stops the selector thread and closes every connection
+  void close() {
+    this.running = false;
+    this.selector.wakeup();
+    try {
+      this.loop.join();
+      for (SelectionKey key : this.selector.keys()) {
+        key.channel().close();
+      }
+      this.selector.close();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    finally {
+      this.actors.shutdown();
+    }
+  }
+
+  // accepts connections, reads commands and writes replies until closed
+  void serve() {
+    while (this.running) {
+      try {
+        this.selector.select();
+        Iterator<SelectionKey> ready = this.selector.selectedKeys().iterator();
+        while (ready.hasNext()) {
+          SelectionKey key = ready.next();
+          ready.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            this.accept();
+          }
+          else {
+            ServerConnection connection = (ServerConnection) key.attachment();
+            if (key.isReadable()) {
+              connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.flush();
+            }
+          }
+        }
+        ServerConnection writer = this.writers.poll();
+        while (writer != null) {
+          writer.flush();
+          writer = this.writers.poll();
+        }
+      }
+      catch (IOException e) {
+        // a failed select leaves nothing to recover, so the server stops
+        this.running = false;
+      }
+    }
+  }
+
+  // takes a new connection
+  void accept() throws IOException {
+    SocketChannel channel = this.server.accept();
+    if (channel != null) {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      ServerConnection connection = new ServerConnection(this, channel);
+      connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+    }
+  }
+
+  // carries out one command from the given connection
+  void handle(ServerConnection from, String line) {
+    String[] words = line.trim().split(" ");
+    try {
+      if (words[0].equals("NEW") && words.length == 2) {
+        int size = Integer.parseInt(words[1]);
+        if (size > MAX_SIZE) {
+          throw new IllegalArgumentException("Board size must be at most " + MAX_SIZE);
+        }
+        int id = this.nextMatch.incrementAndGet();
+        MatchActor match = new MatchActor(this, id, new BridgItGame(size), from);
+        this.matches.put(id, match);
+        from.playing.put(id, match);
+        from.send("MATCH " + id);
+      }
+      else if (words[0].equals("JOIN") && words.length == 2) {
+        int id = Integer.parseInt(words[1]);
+        MatchActor match = this.matches.get(id);
+        if (match == null) {
+          from.send("ERROR " + id + " no such match");
+        }
+        else {
+          // the match counts as this connection's from now on, so a close read after
+          // this line reaches the match's mailbox after the join does
+          from.playing.put(id, match);
+          match.tell(() -> match.join(from));
+        }
+      }
+      else if (words[0].equals("MOVE") && words.length == 3) {
+        int id = Integer.parseInt(words[1]);
+        int index = Integer.parseInt(words[2]);
+        MatchActor match = this.matches.get(id);
+        if (match == null) {
+          from.send("ERROR " + id + " no such match");
+        }
+        else {
+          match.tell(() -> match.move(from, index));
+        }
+      }
+      else if (words[0].equals("QUIT")) {
+        from.close();
+      }
+      else {
+        from.send("ERROR 0 unknown command");
+      }
+    }
+    catch (NumberFormatException e) {
+      from.send("ERROR 0 bad number");
+    }
+    catch (IllegalArgumentException e) {
+      from.send("ERROR 0 " + e.getMessage());
+    }
+  }
+
+  // tells every match a closed connection was playing in, or had asked to join,
+  // that it has gone
+  void abandon(ServerConnection gone) {
+    for (MatchActor match : gone.playing.values()) {
+      match.tell(() -> match.abandon(gone));
+    }
+    gone.playing.clear();
+  }
+
+  // counts a move checked by a match, and how long the check took
+  void validated(long nanos) {
+    this.moves.incrementAndGet();
+    this.validationNanos.addAndGet(nanos);
+    this.slowestValidation.accumulateAndGet(nanos, Math::max);
+  }
+
+  // the average time taken to check a move, in nanoseconds
+  double averageValidationNanos() {
+    long count = this.moves.get();
+    return count == 0 ? 0 : (double) this.validationNanos.get() / count;
+  }
+}
+
+// one client of a GameServer
+// only the selector thread reads and writes the channel, while match actors on
+// other threads add replies to the outgoing buffer under its lock
+class ServerConnection {
+  GameServer server;
+  SocketChannel channel;
+  SelectionKey key;
+  ByteBuffer in;
+  ByteBuffer out;
+  // whether the connection is already waiting in the server's writers
+  AtomicBoolean queued;
+  // the matches that have not ended holding a seat for this connection, or that it
+  // has asked to join, by id
+  ConcurrentHashMap<Integer, MatchActor> playing;
+
+  // constructs a connection over the given channel
+  ServerConnection(GameServer server, SocketChannel channel) {
+    this.server = server;
+    this.channel = channel;
+    this.in = ByteBuffer.allocate(4096);
+    this.out = ByteBuffer.allocate(4096);
+    this.queued = new AtomicBoolean();
+    this.playing = new ConcurrentHashMap<Integer, MatchActor>();
+  }
+
+  // reads what has arrived and carries out every complete line
+  void read() throws IOException {
+    int count;
+    try {
+      count = this.channel.read(this.in);
+    }
+    catch (IOException e) {
+      count = -1;
+    }
+    if (count == -1) {
+      this.close();
+      return;
+    }
+    this.in.flip();
+    int start = this.in.position();
+    for (int i = start; i < this.in.limit(); i++) {
+      if (this.in.get(i) == '\n') {
+        String line = new String(this.in.array(), start, i - start, StandardCharsets.US_ASCII);
+        this.server.handle(this, line);
+        if (!this.key.isValid()) {
+          return;
+        }
+        start = i + 1;
+      }
+    }
+    this.in.position(start);
+    this.in.compact();
+    if (!this.in.hasRemaining()) {
+      // a line longer than the buffer is not part of the protocol
+      this.close();
+    }
+  }
+
+  // adds a line to the replies and has the selector thread write it
+  void send(String line) {
+    byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+    synchronized (this) {
+      if (this.out.remaining() < bytes.length) {
+        ByteBuffer bigger = ByteBuffer.allocate(
+            Math.max(this.out.capacity() * 2, this.out.position() + bytes.length));
+        this.out.flip();
+        bigger.put(this.out);
+        this.out = bigger;
+      }
+      this.out.put(bytes);
+    }
+    if (this.queued.compareAndSet(false, true)) {
+      this.server.writers.add(this);
+      this.server.selector.wakeup();
+    }
+  }
+
+  // writes as much of the replies as the channel takes, and waits to be writable
+  // again for the rest
+  void flush() throws IOException {
+    this.queued.set(false);
+    if (!this.key.isValid()) {
+      return;
+    }
+    boolean left;
+    synchronized (this) {
+      this.out.flip();
+      try {
+        this.channel.write(this.out);
+      }
+      catch (IOException e) {
+        this.out.clear();
+      }
+      this.out.compact();
+      left = this.out.position() > 0;
+    }
+    if (this.key.isValid()) {
+      this.key.interestOps(left
+          ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+          : SelectionKey.OP_READ);
+    }
+  }
+
+  // closes the channel and gives up this connection's matches
+  void close() {
+    if (this.key.isValid()) {
+      this.key.cancel();
+      try {
+        this.channel.close();
+      }
+      catch (IOException e) {
+        // the connection is gone either way
+      }
+      this.server.abandon(this);
+    }
+  }
+}
+
+// one match on a GameServer, as an actor
+// messages are queued in the mailbox from any thread, and the match is scheduled
+// on the server's pool when its mailbox goes from empty to not empty, so every
+// message runs alone and in order, and an idle match costs no thread at all
+class MatchActor {
+  // the most messages handled before the thread is given to another match
+  static final int BATCH = 64;
+
+  GameServer server;
+  int id;
+  BridgItGame game;
+  // the connection holding each player's seat, indexed by player
+  ServerConnection[] seats;
+  ConcurrentLinkedQueue<Runnable> mailbox;
+  AtomicBoolean scheduled;
+  // set once the match has ended or a player has left, so that messages still in
+  // the mailbox are turned away
+  boolean closed;
+
+  // constructs a match where the given connection holds both seats
+  MatchActor(GameServer server, int id, BridgItGame game, ServerConnection owner) {
+    this.server = server;
+    this.id = id;
+    this.game = game;
+    this.seats = new ServerConnection[] {null, owner, owner};
+    this.mailbox = new ConcurrentLinkedQueue<Runnable>();
+    this.scheduled = new AtomicBoolean();
+  }
+
+  // queues a message for the match
+  void tell(Runnable message) {
+    this.mailbox.add(message);
+    if (this.scheduled.compareAndSet(false, true)) {
+      this.server.actors.execute(this::drain);
+    }
+  }
+
+  // handles queued messages, then schedules the match again if more arrived
+  void drain() {
+    for (int i = 0; i < BATCH; i++) {
+      Runnable message = this.mailbox.poll();
+      if (message == null) {
+        break;
+      }
+      message.run();
+    }
+    this.scheduled.set(false);
+    if (!this.mailbox.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+      this.server.actors.execute(this::drain);
+    }
+  }
+
+  // gives player 2's seat to the given connection, if nobody has taken it yet
+  // if the connection closes, its abandon message comes after this one, so the
+  // seat is given up again there
+  void join(ServerConnection from) {
+    if (this.closed || this.seats[2] != this.seats[1]) {
+      if (!this.seated(from)) {
+        from.playing.remove(this.id);
+      }
+      from.send("ERROR " + this.id + (this.closed ? " no such match" : " match is full"));
+      return;
+    }
+    this.seats[2] = from;
+    this.seats[1].send("JOINED " + this.id + " 2");
+    from.send("JOINED " + this.id + " 2");
+  }
+
+  // claims the given cell for the player to move, if the connection holds their seat
+  void move(ServerConnection from, int index) {
+    if (this.closed) {
+      from.send("ERROR " + this.id + " no such match");
+      return;
+    }
+    if (this.game.winner() != 0) {
+      from.send("ERROR " + this.id + " match is over");
+      return;
+    }
+    if (this.seats[this.game.currentPlayer] != from) {
+      from.send("ERROR " + this.id + " not your turn");
+      return;
+    }
+    long start = System.nanoTime();
+    boolean accepted = this.game.play(index);
+    int winner = this.game.winner();
+    this.server.validated(System.nanoTime() - start);
+    if (!accepted) {
+      from.send("ERROR " + this.id + " illegal move");
+      return;
+    }
+    String reply = "MOVED " + this.id + " " + index + " " + winner;
+    this.seats[1].send(reply);
+    if (this.seats[2] != this.seats[1]) {
+      this.seats[2].send(reply);
+    }
+    if (winner != 0) {
+      this.closed = true;
+      this.server.matches.remove(this.id);
+      this.seats[1].playing.remove(this.id);
+      this.seats[2].playing.remove(this.id);
+    }
+  }
+
+  // ends the match if the given connection, which has closed, holds a seat in it,
+  // and tells the player left that it has gone
+  // a connection that only asked to join and was turned away holds no seat, and
+  // its close leaves the match alone
+  void abandon(ServerConnection gone) {
+    if (this.closed || !this.seated(gone)) {
+      return;
+    }
+    this.closed = true;
+    this.server.matches.remove(this.id);
+    for (int player = 1; player <= 2; player++) {
+      ServerConnection seat = this.seats[player];
+      if (seat != gone && (player == 1 || seat != this.seats[1])) {
+        seat.playing.remove(this.id);
+        seat.send("ABANDONED " + this.id);
+      }
+    }
+  }
+
+  // whether the given connection holds either seat
+  boolean seated(ServerConnection connection) {
+    return this.seats[1] == connection || this.seats[2] == connection;
+  }
+}
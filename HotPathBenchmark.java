@@ -0,0 +1,178 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javalib.worldimages.*;
+
+// times the hot paths of the game at several board sizes and reports the time and
+// the bytes allocated per operation, so that regressions show up as numbers
+// run with: java HotPathBenchmark [sizes...]
+class HotPathBenchmark {
+  int[] sizes;
+  int warmups;
+  int repeats;
+  com.sun.management.ThreadMXBean threads;
+  // the time and allocation of the part of a run that is timed by the run itself,
+  // or -1 when the whole run is timed
+  long innerNanos;
+  long innerBytes;
+
+  // constructs a benchmark over the given board sizes
+  HotPathBenchmark(int[] sizes, int warmups, int repeats) {
+    this.sizes = sizes;
+    this.warmups = warmups;
+    this.repeats = repeats;
+    this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    this.innerNanos = -1;
+    this.innerBytes = -1;
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = {11, 51, 201, 1001};
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    new HotPathBenchmark(sizes, 3, 5).run();
+  }
+
+  // prints one line per hot path and board size
+  void run() {
+    System.out.println(String.format("%-28s %6s %14s %16s",
+        "benchmark", "size", "time us/op", "alloc bytes/op"));
+    for (int size : this.sizes) {
+      BridgItWorld world = new BridgItWorld(size);
+
+      this.report("genBoard + linkCells", size, 1, () -> world.genBoard(size));
+      this.report("new Board", size, 1, () -> new Board(size));
+
+      // a bridge along the top row of player 1's dots, searched end to end
+      Board bridged = this.bridgedBoard(size);
+      ArrayList<Cell> cells = bridged.cells();
+      Cell start = cells.get(bridged.index(0, 1));
+      this.report("Cell.hasPath", size, 1,
+          () -> start.hasPath(size, new ArrayList<Cell>(), new RightDirection()));
+      PathSearch search = new PathSearch(bridged);
+      this.report("PathSearch.hasPath", size, 1,
+          () -> search.hasPath(bridged.index(0, 1), i -> bridged.x(i) == size - 1));
+
+      // every cell claimed in a random order, on the standard shape and on variants
+      this.report("claim, square", size, size * size,
+          () -> this.claimAll(new RectTopology(size, size)));
+      this.report("claim, rectangle 2:1", size, size * size * 2,
+          () -> this.claimAll(new RectTopology(size * 2, size)));
+      this.report("claim, hex", size, size * size,
+          () -> this.claimAll(new HexTopology(size, size)));
+
+      int clicks = Math.min(100, (size - 2) * (size - 2) / 4);
+      this.report("onMouseClicked", size, clicks, () -> this.clickAround(size, clicks));
+
+      this.report("drawBoard", size, 1, () -> world.drawBoard(world.board));
+      world.makeScene();
+      this.report("makeScene unchanged", size, 1, () -> world.makeScene());
+      this.report("makeScene after a move", size, 1, () -> {
+        int middle = world.board.index(size / 2, size / 2);
+        world.board.claim(middle, 3 - Math.max(1, world.board.owner(middle)));
+        world.makeScene();
+      });
+    }
+  }
+
+  // a board where player 1 has claimed every cell between their dots in row 1
+  Board bridgedBoard(int size) {
+    Board board = new Board(size);
+    for (int x = 1; x < size - 1; x += 2) {
+      board.claim(board.index(x, 1), 1);
+    }
+    return board;
+  }
+
+  // plays the given number of clicks on random interior cells of a new world
+  // only the clicks are timed, so every repeat plays the same game on a fresh board
+  void clickAround(int size, int clicks) {
+    Random rand = new Random(size);
+    Posn[] positions = new Posn[clicks];
+    for (int i = 0; i < clicks; i++) {
+      int x = 1 + rand.nextInt(size - 2);
+      int y = 1 + rand.nextInt(size - 2);
+      positions[i] = new Posn(x * 50 + 25, y * 50 + 25);
+    }
+    BridgItWorld world = new BridgItWorld(size);
+    long start = System.nanoTime();
+    long allocated = this.allocated();
+    for (Posn pos : positions) {
+      world.onMouseClicked(pos);
+    }
+    this.innerNanos = System.nanoTime() - start;
+    this.innerBytes = this.allocated() - allocated;
+  }
+
+  // claims every cell of a new board of the given shape, alternating players, in
+  // a random order
+  // only the claims are timed, so the board and the order are not counted
+  void claimAll(Topology topology) {
+    int cells = topology.cellCount();
+    int[] order = new int[cells];
+    for (int i = 0; i < cells; i++) {
+      order[i] = i;
+    }
+    Random rand = new Random(cells);
+    for (int i = cells - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int swap = order[i];
+      order[i] = order[j];
+      order[j] = swap;
+    }
+    TopologyBoard board = new TopologyBoard(topology);
+    long start = System.nanoTime();
+    long allocated = this.allocated();
+    for (int i = 0; i < cells; i++) {
+      board.claim(order[i], 1 + i % 2);
+    }
+    this.innerNanos = System.nanoTime() - start;
+    this.innerBytes = this.allocated() - allocated;
+  }
+
+  // runs the given operation several times and prints its best time and
+  // allocation per operation, where one run performs the given number of operations
+  void report(String name, int size, int operations, Runnable run) {
+    long bestNanos = Long.MAX_VALUE;
+    long bestBytes = Long.MAX_VALUE;
+    String note = "";
+    try {
+      for (int i = 0; i < this.warmups + this.repeats; i++) {
+        this.innerNanos = -1;
+        long allocated = this.allocated();
+        long start = System.nanoTime();
+        run.run();
+        long nanos = System.nanoTime() - start;
+        long bytes = this.allocated() - allocated;
+        if (this.innerNanos != -1) {
+          nanos = this.innerNanos;
+          bytes = this.innerBytes;
+        }
+        if (i >= this.warmups) {
+          bestNanos = Math.min(bestNanos, nanos);
+          bestBytes = Math.min(bestBytes, bytes);
+        }
+      }
+    }
+    catch (StackOverflowError e) {
+      note = "stack overflow";
+    }
+    if (note.isEmpty()) {
+      System.out.println(String.format("%-28s %6d %14.2f %16d",
+          name, size, bestNanos / 1e3 / operations, bestBytes / operations));
+    }
+    else {
+      System.out.println(String.format("%-28s %6d %14s %16s", name, size, note, "-"));
+    }
+  }
+
+  // the bytes allocated by this thread so far
+  long allocated() {
+    return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
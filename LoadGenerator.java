@@ -0,0 +1,186 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// plays many matches against a GameServer at once to measure it
+// every connection starts its share of the matches and holds both seats in each,
+// then plays them all in rounds: one random move per unfinished match is sent
+// without waiting, and then every reply is read before the next round
+// run with: java LoadGenerator [port connections matchesPerConnection size]
+// without a port it starts a server of its own on a free port
+class LoadGenerator {
+  int port;
+  int connections;
+  int matchesPerConnection;
+  int boardSize;
+
+  // constructs a load generator for the server on the given local port
+  LoadGenerator(int port, int connections, int matchesPerConnection, int boardSize) {
+    if (connections < 1) {
+      throw new IllegalArgumentException("There must be at least one connection");
+    }
+    // fails early on a bad size
+    new BridgItGame(boardSize);
+    this.port = port;
+    this.connections = connections;
+    this.matchesPerConnection = matchesPerConnection;
+    this.boardSize = boardSize;
+  }
+
+  public static void main(String[] args) {
+    GameServer own = null;
+    int port;
+    if (args.length > 0) {
+      port = Integer.parseInt(args[0]);
+    }
+    else {
+      own = new GameServer(0);
+      own.start();
+      port = own.port();
+    }
+    int connections = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int matches = args.length > 2 ? Integer.parseInt(args[2]) : 1250;
+    int size = args.length > 3 ? Integer.parseInt(args[3]) : 11;
+    System.out.println(new LoadGenerator(port, connections, matches, size).run());
+    if (own != null) {
+      System.out.println(String.format(
+          "server checked %d moves, %.0f ns on average, %d ns at most",
+          own.moves.get(), own.averageValidationNanos(), own.slowestValidation.get()));
+      own.close();
+    }
+  }
+
+  // plays every match to the end and adds up the results
+  LoadResult run() {
+    ExecutorService pool = Executors.newFixedThreadPool(this.connections);
+    ArrayList<Callable<long[]>> workers = new ArrayList<Callable<long[]>>();
+    for (int i = 0; i < this.connections; i++) {
+      long seed = i;
+      workers.add(() -> this.work(seed));
+    }
+    long start = System.nanoTime();
+    long[] totals = new long[3];
+    try {
+      for (Future<long[]> done : pool.invokeAll(workers)) {
+        long[] counts = done.get();
+        for (int k = 0; k < 3; k++) {
+          totals[k] += counts[k];
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A client thread failed", e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+    return new LoadResult(totals[0], totals[1], totals[2], System.nanoTime() - start);
+  }
+
+  // plays this connection's matches
+  // returns how many matches finished, how many moves were made, and how many
+  // moves the server refused
+  long[] work(long seed) {
+    try (Socket socket = new Socket("127.0.0.1", this.port)) {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(30000);
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      BufferedWriter out = new BufferedWriter(
+          new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+      RandomStrategy moves = new RandomStrategy(seed);
+
+      for (int i = 0; i < this.matchesPerConnection; i++) {
+        out.write("NEW " + this.boardSize + "\n");
+      }
+      out.flush();
+      // the server starts matches on its selector thread, so they come back in order
+      HashMap<Integer, BridgItGame> games = new HashMap<Integer, BridgItGame>();
+      ArrayList<Integer> open = new ArrayList<Integer>();
+      for (int i = 0; i < this.matchesPerConnection; i++) {
+        int id = Integer.parseInt(in.readLine().split(" ")[1]);
+        games.put(id, new BridgItGame(this.boardSize));
+        open.add(id);
+      }
+
+      long[] counts = new long[3];
+      while (!open.isEmpty()) {
+        for (int id : open) {
+          BridgItGame game = games.get(id);
+          int index = moves.chooseMove(game.board, game.currentPlayer);
+          out.write("MOVE " + id + " " + index + "\n");
+        }
+        out.flush();
+        // matches run on different threads, so their replies can come in any order
+        ArrayList<Integer> stillOpen = new ArrayList<Integer>();
+        for (int i = 0; i < open.size(); i++) {
+          String[] reply = in.readLine().split(" ");
+          int id = Integer.parseInt(reply[1]);
+          if (reply[0].equals("MOVED")) {
+            games.get(id).play(Integer.parseInt(reply[2]));
+            counts[1] += 1;
+            if (reply[3].equals("0")) {
+              stillOpen.add(id);
+            }
+            else {
+              counts[0] += 1;
+              games.remove(id);
+            }
+          }
+          else {
+            counts[2] += 1;
+            stillOpen.add(id);
+          }
+        }
+        open = stillOpen;
+      }
+      out.write("QUIT\n");
+      out.flush();
+      return counts;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// the outcome of a load test
+class LoadResult {
+  long matches;
+  long moves;
+  long refused;
+  long nanos;
+
+  // constructs the result of a load test
+  LoadResult(long matches, long moves, long refused, long nanos) {
+    this.matches = matches;
+    this.moves = moves;
+    this.refused = refused;
+    this.nanos = nanos;
+  }
+
+  // the number of moves played per second
+  double movesPerSecond() {
+    return this.nanos == 0 ? 0 : this.moves * 1e9 / this.nanos;
+  }
+
+  public String toString() {
+    return String.format("%d matches, %d moves, %d refused, %.0f moves/sec",
+        this.matches, this.moves, this.refused, this.movesPerSecond());
+  }
+}
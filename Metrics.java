@@ -0,0 +1,380 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// the histograms and counters the game keeps about where its time goes
+// everything is off until enable is called: while off, now returns 0 without
+// reading the clock and every record is skipped after one read of enabled, so
+// the calls can stay in the hot paths
+// the numbers can be printed with report, printed every so often with startDump,
+// or read over JMX as bridgit:type=Metrics once registerJmx has been called
+class Metrics {
+  static final String JMX_NAME = "bridgit:type=Metrics";
+
+  static volatile boolean enabled = false;
+  static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<String, Histogram>();
+  static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<String, LongAdder>();
+
+  // a click, split into finding and checking the cell, claiming it and joining it
+  // to its neighbors, and checking whether the game is over
+  static final Histogram CLICK_VALIDATE = histogram("onMouseClicked.validate.ns");
+  static final Histogram CLICK_CLAIM = histogram("onMouseClicked.claim.ns");
+  static final Histogram CLICK_WIN_CHECK = histogram("onMouseClicked.winCheck.ns");
+  static final Histogram MAKE_SCENE = histogram("makeScene.ns");
+  static final Histogram DRAW_BOARD = histogram("drawBoard.ns");
+  static final Histogram GEN_BOARD = histogram("genBoard.ns");
+  static final Histogram PATH_CELLS = histogram("pathSearch.cellsVisited");
+  static final LongAdder SCENES_CACHED = counter("makeScene.cached");
+  static final LongAdder SCENE_BYTES = counter("makeScene.allocatedBytes");
+  static final LongAdder DRAW_BOARD_BYTES = counter("drawBoard.allocatedBytes");
+  static final LongAdder GEN_BOARD_BYTES = counter("genBoard.allocatedBytes");
+
+  static ScheduledExecutorService dumper = null;
+
+  // the histogram with the given name, made empty the first time it is asked for
+  static Histogram histogram(String name) {
+    return HISTOGRAMS.computeIfAbsent(name, key -> new Histogram());
+  }
+
+  // the counter with the given name, made at zero the first time it is asked for
+  static LongAdder counter(String name) {
+    return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+  }
+
+  // starts keeping metrics
+  static void enable() {
+    enabled = true;
+  }
+
+  // stops keeping metrics, keeping the numbers so far
+  static void disable() {
+    enabled = false;
+  }
+
+  // empties every histogram and sets every counter back to zero
+  static void reset() {
+    for (Histogram h : HISTOGRAMS.values()) {
+      h.reset();
+    }
+    for (LongAdder c : COUNTERS.values()) {
+      c.reset();
+    }
+  }
+
+  // the time to measure from, or 0 when metrics are off
+  static long now() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  // the bytes this thread has allocated so far, or 0 when metrics are off or the
+  // JVM cannot tell
+  // the numbers are estimates: the JVM counts in whole allocation buffers
+  static long allocated() {
+    if (!enabled) {
+      return 0;
+    }
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+    }
+    return 0;
+  }
+
+  // adds the bytes allocated since the given count to the counter, when metrics
+  // are on
+  static void addAllocated(LongAdder counter, long since) {
+    if (enabled) {
+      counter.add(Math.max(0, allocated() - since));
+    }
+  }
+
+  // one line for every histogram and counter, sorted by name
+  static String report() {
+    StringBuilder out = new StringBuilder();
+    for (Map.Entry<String, Histogram> e : new TreeMap<String, Histogram>(HISTOGRAMS).entrySet()) {
+      out.append(String.format("%-32s %s%n", e.getKey(), e.getValue()));
+    }
+    for (Map.Entry<String, LongAdder> e : new TreeMap<String, LongAdder>(COUNTERS).entrySet()) {
+      out.append(String.format("%-32s %d%n", e.getKey(), e.getValue().sum()));
+    }
+    return out.toString();
+  }
+
+  // prints the report to the given stream every given number of milliseconds,
+  // instead of any dump already running
+  static synchronized void startDump(long periodMillis, PrintStream out) {
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException("The period must be positive");
+    }
+    stopDump();
+    dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "bridgit-metrics");
+      // the dump must not keep the program alive
+      thread.setDaemon(true);
+      return thread;
+    });
+    dumper.scheduleAtFixedRate(() -> out.print(report()),
+        periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // stops printing the report, if it is being printed
+  static synchronized void stopDump() {
+    if (dumper != null) {
+      dumper.shutdownNow();
+      dumper = null;
+    }
+  }
+
+  // makes the metrics readable over JMX, once
+  static synchronized void registerJmx() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(JMX_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new MetricsBean(), name);
+      }
+    }
+    catch (JMException e) {
+      throw new IllegalStateException("The metrics could not be registered", e);
+    }
+  }
+}
+
+// a histogram of non-negative values, such as nanoseconds or cells
+// values below 8 get a bucket each, and every larger power of two is split into 8
+// buckets, so a percentile is never more than an eighth off the true value
+// recording takes no lock, so any thread may record
+class Histogram {
+  static final int SUB_BUCKETS = 8;
+  static final int BUCKETS = (63 - 1) * SUB_BUCKETS;
+
+  AtomicLongArray counts;
+  AtomicLong count;
+  AtomicLong total;
+  AtomicLong max;
+
+  // constructs an empty histogram
+  Histogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.count = new AtomicLong();
+    this.total = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  // the bucket the given value is counted in
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(0, value);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+    return (exponent - 2) * SUB_BUCKETS + sub;
+  }
+
+  // the smallest value counted in the given bucket
+  static long lowest(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + 2;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 3);
+  }
+
+  // counts the given value, when metrics are on
+  void record(long value) {
+    if (Metrics.enabled) {
+      this.counts.incrementAndGet(bucket(value));
+      this.count.incrementAndGet();
+      this.total.addAndGet(value);
+      this.max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  // counts the nanoseconds since the given time from Metrics.now, when metrics
+  // are on
+  // a start of 0 was taken while metrics were off, so nothing is counted for it
+  // returns the time now, so that the next part of the work can be measured from it
+  long since(long start) {
+    if (!Metrics.enabled) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    if (start != 0) {
+      this.record(now - start);
+    }
+    return now;
+  }
+
+  // the number of values counted
+  long count() {
+    return this.count.get();
+  }
+
+  // the average of the values counted, 0 if there are none
+  double mean() {
+    long n = this.count.get();
+    return n == 0 ? 0 : (double) this.total.get() / n;
+  }
+
+  // the largest value counted
+  long max() {
+    return this.max.get();
+  }
+
+  // the smallest bucket value that at least the given fraction of the values are
+  // no more than, 0 if there are none
+  long percentile(double fraction) {
+    long n = this.count.get();
+    long rank = (long) Math.ceil(fraction * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS && n > 0; i++) {
+      seen += this.counts.get(i);
+      if (seen >= Math.max(1, rank)) {
+        return Math.min(lowest(i), this.max.get());
+      }
+    }
+    return 0;
+  }
+
+  // empties the histogram
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.counts.set(i, 0);
+    }
+    this.count.set(0);
+    this.total.set(0);
+    this.max.set(0);
+  }
+
+  public String toString() {
+    return String.format("count %d mean %.0f p50 %d p99 %d max %d",
+        this.count(), this.mean(), this.percentile(0.5), this.percentile(0.99), this.max());
+  }
+}
+
+// the metrics as seen over JMX
+// every histogram shows as five attributes, such as makeScene.ns.p99, and every
+// counter as one; the attributes follow the histograms and counters made since
+// registering, and the reset operation empties them all
+class MetricsBean implements DynamicMBean {
+  static final String[] STATISTICS = {"count", "mean", "p50", "p99", "max"};
+
+  // the value of the named attribute
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    if (attribute.equals("enabled")) {
+      return Metrics.enabled;
+    }
+    LongAdder counter = Metrics.COUNTERS.get(attribute);
+    if (counter != null) {
+      return counter.sum();
+    }
+    int dot = attribute.lastIndexOf('.');
+    Histogram h = dot == -1 ? null : Metrics.HISTOGRAMS.get(attribute.substring(0, dot));
+    if (h != null) {
+      switch (attribute.substring(dot + 1)) {
+        case "count":
+          return h.count();
+        case "mean":
+          return h.mean();
+        case "p50":
+          return h.percentile(0.5);
+        case "p99":
+          return h.percentile(0.99);
+        case "max":
+          return h.max();
+        default:
+          break;
+      }
+    }
+    throw new AttributeNotFoundException(attribute);
+  }
+
+  // turns metrics on or off, the only attribute that can be set
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    if (!attribute.getName().equals("enabled")) {
+      throw new AttributeNotFoundException(attribute.getName());
+    }
+    Metrics.enabled = (Boolean) attribute.getValue();
+  }
+
+  // the values of the named attributes that exist
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList();
+    for (String name : attributes) {
+      try {
+        list.add(new Attribute(name, this.getAttribute(name)));
+      }
+      catch (AttributeNotFoundException e) {
+        // attributes that do not exist are left out
+      }
+    }
+    return list;
+  }
+
+  // sets the given attributes, returning the ones that were set
+  public AttributeList setAttributes(AttributeList attributes) {
+    AttributeList set = new AttributeList();
+    for (Attribute attribute : attributes.asList()) {
+      try {
+        this.setAttribute(attribute);
+        set.add(attribute);
+      }
+      catch (AttributeNotFoundException e) {
+        // attributes that cannot be set are left out
+      }
+    }
+    return set;
+  }
+
+  // runs the reset operation
+  public Object invoke(String action, Object[] params, String[] signature) {
+    if (!action.equals("reset")) {
+      throw new UnsupportedOperationException(action);
+    }
+    Metrics.reset();
+    return null;
+  }
+
+  // describes the attributes as they are now
+  public MBeanInfo getMBeanInfo() {
+    ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    attributes.add(new MBeanAttributeInfo("enabled", "boolean",
+        "whether metrics are kept", true, true, true));
+    for (String name : new TreeMap<String, Histogram>(Metrics.HISTOGRAMS).keySet()) {
+      for (String statistic : STATISTICS) {
+        attributes.add(new MBeanAttributeInfo(name + "." + statistic,
+            statistic.equals("mean") ? "double" : "long", statistic + " of " + name,
+            true, false, false));
+      }
+    }
+    for (String name : new TreeMap<String, LongAdder>(Metrics.COUNTERS).keySet()) {
+      attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+    }
+    MBeanOperationInfo reset = new MBeanOperationInfo("reset", "empties every metric",
+        new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+    return new MBeanInfo(MetricsBean.class.getName(), "BridgIt metrics",
+        attributes.toArray(new MBeanAttributeInfo[0]), null,
+        new MBeanOperationInfo[] {reset}, null);
+  }
+}
@@ -0,0 +1,347 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// a computer player for boards too large to search with alpha-beta
+// runs Monte Carlo tree search on several threads that share one tree:
+// each thread walks down the tree by UCT, plays the rest of the game at random
+// on its own PlayoutBoard, and adds the result to every node it passed
+// the counters in the tree are atomic, and a thread adds a virtual loss to each
+// node on its way down so that other threads try other branches meanwhile
+// a playout adds at most one level to the tree: it stops at the first node it
+// expands, and the rest of the game is a cheap random rollout
+class MonteCarloPlayer implements MoveStrategy {
+  // the losses a thread adds to a node on the way down and takes back on the way up
+  static final int VIRTUAL_LOSS = 3;
+  // the weight given to trying less visited moves
+  static final double EXPLORATION = 1.0;
+
+  ForkJoinPool pool;
+  int threads;
+  long budgetNanos;
+  // a node's children are added once it has been visited this many times
+  int expandAfter;
+  long seed;
+
+  AtomicLong playouts;
+  long searchNanos;
+  // set once the thread that asked for the move has been interrupted, so that
+  // every playout thread stops, and the interrupt is passed back to that thread
+  volatile boolean interrupted;
+
+  // constructs a player that searches for the given number of milliseconds per
+  // move on the given number of threads of the common fork-join pool
+  MonteCarloPlayer(long budgetMillis, int threads) {
+    if (budgetMillis <= 0) {
+      throw new IllegalArgumentException("The time budget must be positive");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("There must be at least one thread");
+    }
+    this.pool = ForkJoinPool.commonPool();
+    this.threads = threads;
+    this.budgetNanos = budgetMillis * 1000000L;
+    this.expandAfter = 2;
+    this.seed = 0x5EED;
+    this.playouts = new AtomicLong();
+  }
+
+  // constructs a player that uses every core for a 0.05s tick of the game
+  MonteCarloPlayer() {
+    this(40, Runtime.getRuntime().availableProcessors());
+  }
+
+  // chooses the move whose branch of the tree was visited the most, or -1 if no
+  // move is open
+  public int chooseMove(Board board, int player) {
+    long start = System.nanoTime();
+    long deadline = start + this.budgetNanos;
+    MctsNode root = new MctsNode(-1, 3 - player);
+    this.playouts.set(0);
+    // the playouts run on the pool's threads, so they watch this one for interrupts
+    Thread caller = Thread.currentThread();
+    this.interrupted = caller.isInterrupted();
+
+    ArrayList<Future<Void>> running = new ArrayList<Future<Void>>();
+    for (int i = 0; i < this.threads; i++) {
+      PlayoutBoard playout = new PlayoutBoard(board, this.seed + i);
+      if (i == 0) {
+        // the root is expanded up front, so there is a move to choose even if
+        // time runs out before any playout reaches it
+        root.expand(playout);
+      }
+      Callable<Void> worker = () -> {
+        this.runUntil(root, playout, deadline, caller);
+        return null;
+      };
+      running.add(this.pool.submit(worker));
+    }
+    try {
+      for (Future<Void> done : running) {
+        this.await(done);
+      }
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A playout thread failed", e.getCause());
+    }
+    if (this.interrupted) {
+      caller.interrupt();
+    }
+    this.searchNanos = System.nanoTime() - start;
+
+    // when no child was visited, the first open move is chosen
+    int best = -1;
+    int bestVisits = -1;
+    for (MctsNode child : root.children.get()) {
+      if (child.visits.get() > bestVisits) {
+        bestVisits = child.visits.get();
+        best = child.move;
+      }
+    }
+    return best;
+  }
+
+  // waits for the given playout thread to finish
+  // an interrupt while waiting tells the playout threads to stop, and waiting goes on
+  // until they have
+  void await(Future<Void> done) throws ExecutionException {
+    while (true) {
+      try {
+        done.get();
+        return;
+      }
+      catch (InterruptedException e) {
+        this.interrupted = true;
+      }
+    }
+  }
+
+  // plays out games from the root on the given board until the deadline passes or
+  // the given thread is interrupted
+  void runUntil(MctsNode root, PlayoutBoard board, long deadline, Thread caller) {
+    ArrayList<MctsNode> path = new ArrayList<MctsNode>();
+    do {
+      this.playout(root, board, path);
+      this.playouts.incrementAndGet();
+      if (caller.isInterrupted()) {
+        this.interrupted = true;
+      }
+    } while (System.nanoTime() < deadline && !this.interrupted);
+  }
+
+  // walks down the tree from the root, finishes the game at random and records
+  // the winner in every node on the way
+  // a node is expanded once playouts have finished through it expandAfter times,
+  // counting only finished playouts, and the walk stops at the child it picks there
+  void playout(MctsNode root, PlayoutBoard board, ArrayList<MctsNode> path) {
+    board.reset();
+    path.clear();
+    MctsNode node = root;
+    root.visits.incrementAndGet();
+    boolean expanded = false;
+    while (!expanded) {
+      MctsNode[] children = node.children.get();
+      if (children == null && node.visits.get() >= this.expandAfter) {
+        children = node.expand(board);
+        expanded = true;
+      }
+      if (children == null || children.length == 0) {
+        break;
+      }
+      node = this.select(node, children);
+      node.losses.addAndGet(VIRTUAL_LOSS);
+      board.claim(node.move, node.player);
+      path.add(node);
+    }
+
+    int winner = board.finish(3 - node.player);
+    for (MctsNode visited : path) {
+      visited.losses.addAndGet(-VIRTUAL_LOSS);
+      visited.visits.incrementAndGet();
+      if (visited.player == winner) {
+        visited.wins.incrementAndGet();
+      }
+    }
+  }
+
+  // the child with the best upper confidence bound for the player choosing it,
+  // counting the virtual losses of other threads as visits without a win
+  MctsNode select(MctsNode parent, MctsNode[] children) {
+    double logVisits = Math.log(Math.max(1, parent.visits.get()));
+    MctsNode best = children[0];
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (MctsNode child : children) {
+      int visits = child.visits.get() + child.losses.get();
+      if (visits == 0) {
+        return child;
+      }
+      double score = (double) child.wins.get() / visits
+          + EXPLORATION * Math.sqrt(logVisits / visits);
+      if (score > bestScore) {
+        bestScore = score;
+        best = child;
+      }
+    }
+    return best;
+  }
+
+  // the number of games played out per second during the last move
+  double playoutsPerSecond() {
+    if (this.searchNanos == 0) {
+      return 0;
+    }
+    return this.playouts.get() * 1e9 / this.searchNanos;
+  }
+}
+
+// a node of the shared search tree: the move that led here and its statistics
+class MctsNode {
+  int move;
+  // the player who made the move
+  int player;
+  // the playouts finished through the node, and the virtual losses of the ones
+  // still under way
+  AtomicInteger visits;
+  AtomicInteger wins;
+  AtomicInteger losses;
+  // null until the node is expanded, then set once for every thread
+  AtomicReference<MctsNode[]> children;
+
+  // constructs an unvisited node for the given player's move
+  MctsNode(int move, int player) {
+    this.move = move;
+    this.player = player;
+    this.visits = new AtomicInteger();
+    this.wins = new AtomicInteger();
+    this.losses = new AtomicInteger();
+    this.children = new AtomicReference<MctsNode[]>();
+  }
+
+  // adds a child for every move open on the given board, which must be the
+  // position at this node
+  // if another thread expands the node first, its children are kept instead
+  MctsNode[] expand(PlayoutBoard board) {
+    int[] moves = board.openMoves();
+    MctsNode[] made = new MctsNode[moves.length];
+    for (int i = 0; i < moves.length; i++) {
+      made[i] = new MctsNode(moves[i], 3 - this.player);
+    }
+    this.children.compareAndSet(null, made);
+    return this.children.get();
+  }
+}
+
+// a cheap board for one thread to play random games on
+// it starts from a copy of a position, and once every open cell has been claimed
+// the winner is found with a single pass of union-find over player 1's cells:
+// a full board always has exactly one winner
+class PlayoutBoard {
+  int size;
+  byte[] start;
+  byte[] owners;
+  // the cells that were open in the starting position
+  int[] open;
+  int[] scratch;
+  UnionFind sets;
+  SplittableRandom rand;
+
+  // constructs a playout board starting from the given position
+  PlayoutBoard(Board board, long seed) {
+    this.size = board.size;
+    this.start = board.owners.clone();
+    this.owners = board.owners.clone();
+    int count = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.playable(i)) {
+        count += 1;
+      }
+    }
+    this.open = new int[count];
+    count = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.playable(i)) {
+        this.open[count] = i;
+        count += 1;
+      }
+    }
+    this.scratch = new int[this.open.length];
+    this.sets = new UnionFind(board.cellCount() + 2);
+    this.rand = new SplittableRandom(seed);
+  }
+
+  // goes back to the starting position
+  void reset() {
+    System.arraycopy(this.start, 0, this.owners, 0, this.owners.length);
+  }
+
+  // gives the cell at the given index to the given player
+  void claim(int index, int player) {
+    this.owners[index] = (byte) player;
+  }
+
+  // the cells still open on this board
+  int[] openMoves() {
+    int count = this.collectOpen();
+    int[] result = new int[count];
+    System.arraycopy(this.scratch, 0, result, 0, count);
+    return result;
+  }
+
+  // gathers the open cells into the scratch array and returns how many there are
+  int collectOpen() {
+    int count = 0;
+    for (int i : this.open) {
+      if (this.owners[i] == 0) {
+        this.scratch[count] = i;
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  // claims every open cell in a random order, taking turns starting with the
+  // given player, and returns the winner
+  int finish(int toMove) {
+    int count = this.collectOpen();
+    for (int i = count - 1; i >= 0; i--) {
+      int j = this.rand.nextInt(i + 1);
+      int cell = this.scratch[j];
+      this.scratch[j] = this.scratch[i];
+      this.owners[cell] = (byte) toMove;
+      toMove = 3 - toMove;
+    }
+    return this.winner();
+  }
+
+  // the player who has connected their edges on a full board
+  int winner() {
+    int cells = this.owners.length;
+    int left = cells;
+    int right = cells + 1;
+    this.sets.reset();
+    for (int i = 0; i < cells; i++) {
+      if (this.owners[i] == 1) {
+        int x = i % this.size;
+        if (x == 0) {
+          this.sets.union(i, left);
+        }
+        else if (x == this.size - 1) {
+          this.sets.union(i, right);
+        }
+        if (x < this.size - 1 && this.owners[i + 1] == 1) {
+          this.sets.union(i, i + 1);
+        }
+        if (i + this.size < cells && this.owners[i + this.size] == 1) {
+          this.sets.union(i, i + this.size);
+        }
+      }
+    }
+    return this.sets.connected(left, right) ? 1 : 2;
+  }
+}
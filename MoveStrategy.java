@@ -0,0 +1,8 @@
+// a way of choosing moves for a player, so that the computer can take over
+// either side of the game
+interface MoveStrategy {
+  // chooses a cell for the given player to claim on the given board
+  // returns -1 if there is no move to make
+  // the board must not be changed
+  int chooseMove(Board board, int player);
+}
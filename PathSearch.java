@@ -0,0 +1,85 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// an iterative search for a path of same-player cells on a board, working on
+// cell indices instead of the linked Cell graph
+// the work stack and the visited stamps are kept between searches, so a search
+// allocates nothing and cannot overflow the call stack on large boards
+// the number of cells each search takes off the stack goes to Metrics.PATH_CELLS
+// neighbors come from the board's topology, so the same search runs on any shape
+class PathSearch {
+  Board board;
+  byte[] owners;
+  Topology topology;
+  int[] stack;
+  int[] visited;
+  int epoch;
+
+  // constructs a path search over the given board
+  PathSearch(Board board) {
+    this(board.owners, board.topology());
+    this.board = board;
+  }
+
+  // constructs a path search over a board of the given shape whose cells are
+  // owned as the given array says
+  PathSearch(byte[] owners, Topology topology) {
+    if (owners.length != topology.cellCount()) {
+      throw new IllegalArgumentException("There must be one owner per cell");
+    }
+    this.board = null;
+    this.owners = owners;
+    this.topology = topology;
+    this.stack = new int[owners.length];
+    this.visited = new int[owners.length];
+    this.epoch = 0;
+  }
+
+  // determines if the cell at start is connected through cells of its own player
+  // to a cell that satisfies the goal
+  // gives the same answer as Cell.hasPath with the matching direction
+  boolean hasPath(int start, IntPredicate goal) {
+    this.nextEpoch();
+    int player = this.owners[start];
+    int degree = this.topology.degree;
+    int[] neighbors = this.topology.neighbors;
+    int size = 0;
+    this.visited[start] = this.epoch;
+    this.stack[size] = start;
+    size += 1;
+    int cells = 0;
+
+    while (size > 0) {
+      size -= 1;
+      int index = this.stack[size];
+      cells += 1;
+      // neighbors are visited in the topology's clockwise order, which on a
+      // BridgIt board is the same as Cell.iterator's
+      for (int side = 0; side < degree; side++) {
+        int next = neighbors[index * degree + side];
+        if (next != -1
+            && this.visited[next] != this.epoch
+            && this.owners[next] == player) {
+          if (goal.test(next)) {
+            Metrics.PATH_CELLS.record(cells);
+            return true;
+          }
+          this.visited[next] = this.epoch;
+          this.stack[size] = next;
+          size += 1;
+        }
+      }
+    }
+    Metrics.PATH_CELLS.record(cells);
+    return false;
+  }
+
+  // starts a new search, so that every stamp left by earlier searches is stale
+  void nextEpoch() {
+    this.epoch += 1;
+    if (this.epoch == Integer.MAX_VALUE) {
+      Arrays.fill(this.visited, 0);
+      this.epoch = 1;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// a bounded cache from Zobrist hashes of positions to what is known about them:
+// the winner, and the evaluation for the player to move when it has been computed
+// the cache is split into segments by the top bits of the hash, each guarded by
+// its own lock, so threads sharing a cache rarely wait for each other
+// when a segment is full, a clock hand sweeps its entries and evicts the first
+// one that has not been read since the hand last passed it
+class PositionCache {
+  // what get returns for a position that is not in the cache
+  static final long MISSING = Long.MIN_VALUE;
+  // the evaluation stored with a position that has not been evaluated
+  static final int UNKNOWN = Integer.MIN_VALUE;
+
+  CacheSegment[] segments;
+  int segmentShift;
+  int capacity;
+  AtomicLong hits;
+  AtomicLong misses;
+  AtomicLong evictions;
+
+  // constructs a cache that holds at least the given number of positions
+  PositionCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("A cache must hold at least one position");
+    }
+    // one segment per 1024 positions, up to 64 segments
+    int segmentBits = 0;
+    while (segmentBits < 6 && (1024 << segmentBits) < capacity) {
+      segmentBits += 1;
+    }
+    int count = 1 << segmentBits;
+    int perSegment = (capacity + count - 1) / count;
+    this.segments = new CacheSegment[count];
+    for (int i = 0; i < count; i++) {
+      this.segments[i] = new CacheSegment(perSegment);
+    }
+    this.segmentShift = 64 - segmentBits;
+    this.capacity = perSegment * count;
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.evictions = new AtomicLong();
+  }
+
+  // packs a winner and an evaluation into one entry
+  static long entry(int winner, int evaluation) {
+    return ((long) evaluation << 8) | winner;
+  }
+
+  // the winner stored in an entry, 0 if nobody has won
+  static int winnerOf(long entry) {
+    return (int) (entry & 0xFF);
+  }
+
+  // the evaluation stored in an entry, or UNKNOWN
+  static int evaluationOf(long entry) {
+    return (int) (entry >> 8);
+  }
+
+  // the segment the given position belongs to
+  CacheSegment segmentFor(long hash) {
+    return this.segments[this.segments.length == 1 ? 0 : (int) (hash >>> this.segmentShift)];
+  }
+
+  // the entry stored for the given position, or MISSING
+  long get(long hash) {
+    long entry = this.segmentFor(hash).get(hash);
+    if (entry == MISSING) {
+      this.misses.incrementAndGet();
+    }
+    else {
+      this.hits.incrementAndGet();
+    }
+    return entry;
+  }
+
+  // stores the winner and evaluation of the given position, replacing what was
+  // stored for it, and evicting another position if the segment is full
+  void put(long hash, int winner, int evaluation) {
+    if (this.segmentFor(hash).put(hash, entry(winner, evaluation))) {
+      this.evictions.incrementAndGet();
+    }
+  }
+
+  // the number of positions in the cache
+  int size() {
+    int result = 0;
+    for (CacheSegment segment : this.segments) {
+      result += segment.size();
+    }
+    return result;
+  }
+
+  // the fraction of lookups that found their position, 0 before any lookup
+  double hitRate() {
+    long hit = this.hits.get();
+    long total = hit + this.misses.get();
+    return total == 0 ? 0 : (double) hit / total;
+  }
+
+  // forgets every position and resets the counters
+  void clear() {
+    for (CacheSegment segment : this.segments) {
+      segment.clear();
+    }
+    this.hits.set(0);
+    this.misses.set(0);
+    this.evictions.set(0);
+  }
+}
+
+// one lock's worth of a PositionCache
+// entries live in slots that the clock hand sweeps in order, and an open-addressed
+// index with linear probing finds the slot of a hash
+// index positions hold a slot plus one, so that 0 means empty
+class CacheSegment {
+  long[] keys;
+  long[] entries;
+  boolean[] referenced;
+  int used;
+  int hand;
+  int[] index;
+  int indexMask;
+
+  // constructs an empty segment with the given number of slots
+  CacheSegment(int slots) {
+    this.keys = new long[slots];
+    this.entries = new long[slots];
+    this.referenced = new boolean[slots];
+    this.used = 0;
+    this.hand = 0;
+    // the index is kept at most half full so probes stay short
+    int size = 2;
+    while (size < slots * 2) {
+      size *= 2;
+    }
+    this.index = new int[size];
+    this.indexMask = size - 1;
+  }
+
+  // where the given hash starts probing in the index
+  int home(long hash) {
+    return (int) (hash ^ (hash >>> 32)) & this.indexMask;
+  }
+
+  // the index position holding the given hash, or the empty position where it
+  // would go
+  int probe(long hash) {
+    int i = this.home(hash);
+    while (this.index[i] != 0 && this.keys[this.index[i] - 1] != hash) {
+      i = (i + 1) & this.indexMask;
+    }
+    return i;
+  }
+
+  // the entry stored for the given hash, or PositionCache.MISSING
+  synchronized long get(long hash) {
+    int slot = this.index[this.probe(hash)] - 1;
+    if (slot == -1) {
+      return PositionCache.MISSING;
+    }
+    this.referenced[slot] = true;
+    return this.entries[slot];
+  }
+
+  // stores the entry for the given hash
+  // returns whether another hash was evicted to make room
+  synchronized boolean put(long hash, long entry) {
+    int position = this.probe(hash);
+    if (this.index[position] != 0) {
+      this.entries[this.index[position] - 1] = entry;
+      return false;
+    }
+    boolean evicted = false;
+    int slot;
+    if (this.used < this.keys.length) {
+      slot = this.used;
+      this.used += 1;
+    }
+    else {
+      slot = this.victim();
+      this.remove(this.keys[slot]);
+      evicted = true;
+      // removing may have shifted the empty position for this hash
+      position = this.probe(hash);
+    }
+    this.keys[slot] = hash;
+    this.entries[slot] = entry;
+    this.referenced[slot] = false;
+    this.index[position] = slot + 1;
+    return evicted;
+  }
+
+  // advances the clock hand to the first slot not read since it last passed,
+  // giving every slot it passes on the way a second chance
+  int victim() {
+    while (this.referenced[this.hand]) {
+      this.referenced[this.hand] = false;
+      this.hand = (this.hand + 1) % this.keys.length;
+    }
+    int slot = this.hand;
+    this.hand = (this.hand + 1) % this.keys.length;
+    return slot;
+  }
+
+  // takes the given hash out of the index, shifting back the entries after it so
+  // that every probe still finds its hash without tombstones
+  void remove(long hash) {
+    int hole = this.probe(hash);
+    this.index[hole] = 0;
+    int i = (hole + 1) & this.indexMask;
+    while (this.index[i] != 0) {
+      int home = this.home(this.keys[this.index[i] - 1]);
+      // the entry can fill the hole unless its home lies after the hole,
+      // cyclically, up to the entry itself
+      if (((i - home) & this.indexMask) >= ((i - hole) & this.indexMask)) {
+        this.index[hole] = this.index[i];
+        this.index[i] = 0;
+        hole = i;
+      }
+      i = (i + 1) & this.indexMask;
+    }
+  }
+
+  // the number of hashes stored
+  synchronized int size() {
+    return this.used;
+  }
+
+  // forgets every hash
+  synchronized void clear() {
+    Arrays.fill(this.index, 0);
+    this.used = 0;
+    this.hand = 0;
+  }
+}
@@ -0,0 +1,43 @@
+import java.util.SplittableRandom;
+
+// a strategy that claims a random open cell
+// keeps its own random numbers, so each thread should have its own instance
+class RandomStrategy implements MoveStrategy {
+  SplittableRandom rand;
+
+  // constructs a random strategy from the given seed
+  RandomStrategy(long seed) {
+    this.rand = new SplittableRandom(seed);
+  }
+
+  // a random open interior cell, or -1 if there is none
+  public int chooseMove(Board board, int player) {
+    int inner = board.size - 2;
+    // most of the board is open for most of a game, so a few guesses usually do
+    for (int tries = 0; tries < 16; tries++) {
+      int index = board.index(1 + this.rand.nextInt(inner), 1 + this.rand.nextInt(inner));
+      if (!board.taken(index)) {
+        return index;
+      }
+    }
+    int open = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.playable(i)) {
+        open += 1;
+      }
+    }
+    if (open == 0) {
+      return -1;
+    }
+    int pick = this.rand.nextInt(open);
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.playable(i)) {
+        if (pick == 0) {
+          return i;
+        }
+        pick -= 1;
+      }
+    }
+    return -1;
+  }
+}
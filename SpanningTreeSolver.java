@@ -0,0 +1,695 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// a perfect player built on Lehman's solution of the Shannon switching game,
+// which Bridg-It is an instance of
+// for the solver's player, every dot of theirs is a vertex and every open cell is
+// an edge between the two dots of theirs it would join; the dots on the two edges
+// of the board they connect are merged into one vertex per edge. The player who
+// moves first wins because this graph, plus one virtual edge between the two
+// board edges, splits into two spanning trees with no edge in common.
+// the solver keeps two such trees. When the opponent claims a cell, that edge is
+// removed from its tree, which falls into two parts, and the solver answers with
+// the edge of the other tree that joins the parts. Its own cells are contracted
+// into single vertices, so both trees keep spanning the graph.
+// each answer only walks the two trees, through the list of tree edges kept at
+// every contracted vertex; the trees are split from scratch only when the solver
+// is attached to a game, or when the board changed in a way it did not follow.
+// When no pair of trees exists, for example when playing second, it keeps the two
+// largest forests up to date the same way, answers a cut with an edge that joins
+// the parts again when there is one, and otherwise claims an edge of its forests
+// walks share scratch arrays, where a vertex is marked by stamping it with the
+// number of the walk, so no walk allocates or clears anything
+class SpanningTreeSolver implements MoveStrategy {
+  static final byte FREE = 0;
+  static final byte OWN = 1;
+  static final byte CUT = 2;
+
+  // the player the solver is playing and the size of the board it was built for
+  int player;
+  int size;
+
+  // edges: edgeU[e] and edgeV[e] are the vertices of the dots edge e joins and
+  // cellOf[e] is the cell that claims it; the last edge is the virtual edge between
+  // the two board edges and has no cell
+  int[] edgeU;
+  int[] edgeV;
+  int[] cellOf;
+  byte[] status;
+  // the tree (0 or 1) each free edge belongs to, or -1
+  byte[] tree;
+  int virtualEdge;
+  // the edge each cell claims, or -1
+  int[] edgeOf;
+  int vertexCount;
+  int low;
+  int high;
+  // vertices joined by the solver's own cells
+  UnionFind merged;
+  // the edges of each tree at each contracted vertex, as linked lists of edge ends:
+  // end 2 * e + 0 or 1 of edge e is listed at the vertex of edgeU[e] or edgeV[e]
+  // head[k][v] and last[k][v] are the first and last ends listed at root v in tree
+  // k, or -1, and nextEnd links the ends. The lists of two vertices are joined in
+  // one step when an edge between them is claimed, and an edge that leaves its
+  // tree is unlinked the next time a walk passes it
+  int[][] head;
+  int[][] last;
+  int[] nextEnd;
+  // scratch for walks: a vertex was reached by the current walk when its stamp is
+  // the walk's epoch, visit lists the vertices reached in order, and via holds the
+  // edge each was reached by
+  int[] stamp;
+  int epoch;
+  int[] visit;
+  int[] via;
+  // every edge before these is out of tree k, or not free, for good until the
+  // next build, since edges only ever leave the trees and stop being free
+  int[] treeCursor;
+  int freeCursor;
+
+  // whether the two trees currently span the graph
+  boolean winning;
+  // the cell the solver last answered with, or -1
+  int lastMove;
+  // how many times the trees have been split from scratch
+  int builds;
+
+  // constructs a solver that plays for the given player
+  SpanningTreeSolver(int player) {
+    if (player != 1 && player != 2) {
+      throw new IllegalArgumentException("Player must be 1 or 2");
+    }
+    this.player = player;
+    this.size = -1;
+    this.lastMove = -1;
+  }
+
+  // chooses the solver's answer to the position on the given board
+  public int chooseMove(Board board, int player) {
+    if (player != this.player) {
+      throw new IllegalArgumentException("This solver plays for player " + this.player);
+    }
+    int move = -1;
+    int cut = this.followBoard(board);
+    if (cut == -2) {
+      this.build(board);
+      if (this.winning) {
+        move = this.answerCut(this.virtualEdge);
+      }
+    }
+    else if (cut != -1) {
+      move = this.answerCut(cut);
+    }
+    if (move == -1) {
+      move = this.freeMove();
+    }
+    if (move == -1) {
+      this.winning = false;
+      move = this.fallbackMove();
+    }
+    this.lastMove = move;
+    return move;
+  }
+
+  // brings the edge states up to date with the given board, one move at a time,
+  // whether or not the trees span the graph
+  // returns the edge of the single opponent move made since the solver's last
+  // answer, -1 if there was none, or -2 if the trees have to be built again
+  int followBoard(Board board) {
+    if (this.size != board.size) {
+      return -2;
+    }
+    if (this.lastMove != -1 && board.owner(this.lastMove) != this.player) {
+      return -2;
+    }
+    int cut = -1;
+    for (int e = 0; e < this.virtualEdge; e++) {
+      int owner = board.owner(this.cellOf[e]);
+      if (this.status[e] == FREE && owner != 0) {
+        if (owner == this.player || cut != -1) {
+          return -2;
+        }
+        cut = e;
+      }
+      else if (this.status[e] != FREE && owner == 0) {
+        return -2;
+      }
+    }
+    return cut;
+  }
+
+  // builds the graph of the given position and splits it into two trees
+  void build(Board board) {
+    this.builds += 1;
+    this.size = board.size;
+    this.lastMove = -1;
+    int cellCount = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.interior(i) && board.x(i) % 2 == board.y(i) % 2) {
+        cellCount += 1;
+      }
+    }
+    int[] cells = new int[cellCount];
+    cellCount = 0;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.interior(i) && board.x(i) % 2 == board.y(i) % 2) {
+        cells[cellCount] = i;
+        cellCount += 1;
+      }
+    }
+
+    // the solver's dots get vertex numbers, with the two board edges first
+    int[] vertexOf = new int[board.cellCount()];
+    this.low = 0;
+    this.high = 1;
+    int next = 2;
+    for (int i = 0; i < board.cellCount(); i++) {
+      vertexOf[i] = -1;
+      if (this.isDot(board, i)) {
+        int along = this.player == 1 ? board.x(i) : board.y(i);
+        if (along == 0) {
+          vertexOf[i] = this.low;
+        }
+        else if (along == board.size - 1) {
+          vertexOf[i] = this.high;
+        }
+        else {
+          vertexOf[i] = next;
+          next += 1;
+        }
+      }
+    }
+    this.vertexCount = next;
+
+    int edges = cells.length + 1;
+    this.edgeU = new int[edges];
+    this.edgeV = new int[edges];
+    this.cellOf = new int[edges];
+    this.status = new byte[edges];
+    this.tree = new byte[edges];
+    this.edgeOf = new int[board.cellCount()];
+    Arrays.fill(this.edgeOf, -1);
+    this.merged = new UnionFind(this.vertexCount);
+    for (int e = 0; e < cells.length; e++) {
+      int cell = cells[e];
+      int first = -1;
+      int second = -1;
+      for (int side = 0; side < 4; side++) {
+        int neighbor = board.neighbor(cell, side);
+        if (neighbor != -1 && this.isDot(board, neighbor)) {
+          if (first == -1) {
+            first = vertexOf[neighbor];
+          }
+          else {
+            second = vertexOf[neighbor];
+          }
+        }
+      }
+      this.edgeU[e] = first;
+      this.edgeV[e] = second;
+      this.cellOf[e] = cell;
+      this.edgeOf[cell] = e;
+      if (board.owner(cell) == this.player) {
+        this.status[e] = OWN;
+        this.merged.union(first, second);
+      }
+      else if (board.owner(cell) != 0) {
+        this.status[e] = CUT;
+      }
+    }
+    this.virtualEdge = cells.length;
+    this.edgeU[this.virtualEdge] = this.low;
+    this.edgeV[this.virtualEdge] = this.high;
+    this.cellOf[this.virtualEdge] = -1;
+
+    this.winning = new ForestPartition(this).run();
+    this.linkTrees();
+  }
+
+  // lists every tree edge at the contracted vertices it joins
+  void linkTrees() {
+    this.head = new int[2][this.vertexCount];
+    this.last = new int[2][this.vertexCount];
+    this.nextEnd = new int[this.edgeU.length * 2];
+    for (int k = 0; k < 2; k++) {
+      Arrays.fill(this.head[k], -1);
+      Arrays.fill(this.last[k], -1);
+    }
+    for (int e = 0; e <= this.virtualEdge; e++) {
+      if (this.status[e] == FREE && this.tree[e] != -1) {
+        this.append(this.tree[e], this.merged.find(this.edgeU[e]), 2 * e);
+        this.append(this.tree[e], this.merged.find(this.edgeV[e]), 2 * e + 1);
+      }
+    }
+    this.stamp = new int[this.vertexCount];
+    this.epoch = 0;
+    this.visit = new int[this.vertexCount];
+    this.via = new int[this.vertexCount];
+    this.treeCursor = new int[2];
+    this.freeCursor = 0;
+  }
+
+  // adds the given edge end to the end of the list of root v in tree k
+  void append(int k, int v, int end) {
+    this.nextEnd[end] = -1;
+    if (this.head[k][v] == -1) {
+      this.head[k][v] = end;
+    }
+    else {
+      this.nextEnd[this.last[k][v]] = end;
+    }
+    this.last[k][v] = end;
+  }
+
+  // the first end listed at root v in tree k whose edge is still in the tree, or
+  // -1, unlinking the ends before it whose edges have left
+  int firstLive(int k, int v) {
+    int end = this.head[k][v];
+    while (end != -1 && !this.inTree(k, end / 2)) {
+      end = this.nextEnd[end];
+    }
+    this.head[k][v] = end;
+    if (end == -1) {
+      this.last[k][v] = -1;
+    }
+    return end;
+  }
+
+  // the end after the given one in its list whose edge is still in tree k, or -1,
+  // unlinking the ends between them
+  int nextLive(int k, int v, int end) {
+    int next = this.nextEnd[end];
+    while (next != -1 && !this.inTree(k, next / 2)) {
+      next = this.nextEnd[next];
+    }
+    this.nextEnd[end] = next;
+    if (next == -1) {
+      this.last[k][v] = end;
+    }
+    return next;
+  }
+
+  // is the given edge free and part of tree k
+  boolean inTree(int k, int e) {
+    return this.status[e] == FREE && this.tree[e] == k;
+  }
+
+  // the contracted vertex at the far end of the given edge end
+  int across(int end) {
+    int e = end / 2;
+    return this.merged.find(end % 2 == 0 ? this.edgeV[e] : this.edgeU[e]);
+  }
+
+  // is the cell at the given index one of the solver's dots, which never change
+  boolean isDot(Board board, int index) {
+    if (this.player == 1) {
+      return board.x(index) % 2 == 0 && board.y(index) % 2 != 0;
+    }
+    else {
+      return board.x(index) % 2 != 0 && board.y(index) % 2 == 0;
+    }
+  }
+
+  // removes the given edge, taken by the opponent, and returns the cell that
+  // reconnects its tree, or -1 if it was in neither tree or nothing reconnects it
+  // only the part of the broken tree on one side of the cut, and the edges of the
+  // other tree at its vertices, are walked
+  int answerCut(int cut) {
+    int broken = this.tree[cut];
+    this.status[cut] = CUT;
+    this.tree[cut] = -1;
+    if (broken == -1) {
+      return -1;
+    }
+
+    // mark the part of the broken tree still joined to one end of the cut edge
+    int count = this.reach(broken, this.merged.find(this.edgeU[cut]), -1);
+    int other = 1 - broken;
+    for (int i = 0; i < count; i++) {
+      int at = this.visit[i];
+      for (int end = this.firstLive(other, at); end != -1; end = this.nextLive(other, at, end)) {
+        int e = end / 2;
+        if (e != this.virtualEdge && this.stamp[this.across(end)] != this.epoch) {
+          this.claimEdge(e);
+          return this.cellOf[e];
+        }
+      }
+    }
+    // the trees were not spanning after all
+    this.winning = false;
+    return -1;
+  }
+
+  // claims an edge of the first tree, or else of the second, when the opponent's
+  // move left nothing to reconnect
+  // returns -1 if every edge of the trees is already taken
+  int freeMove() {
+    for (int k = 0; k < 2; k++) {
+      while (this.treeCursor[k] < this.virtualEdge && !this.inTree(k, this.treeCursor[k])) {
+        this.treeCursor[k] += 1;
+      }
+      if (this.treeCursor[k] < this.virtualEdge) {
+        int e = this.treeCursor[k];
+        this.claimEdge(e);
+        return this.cellOf[e];
+      }
+    }
+    return -1;
+  }
+
+  // contracts the given free edge, now the solver's
+  // any tree it was not part of gains a cycle, so one edge of that cycle leaves
+  // the tree
+  void claimEdge(int e) {
+    int u = this.merged.find(this.edgeU[e]);
+    int v = this.merged.find(this.edgeV[e]);
+    for (int k = 0; k < 2; k++) {
+      if (this.tree[e] != k) {
+        int drop = this.edgeOnPath(k, u, v);
+        if (drop != -1) {
+          this.tree[drop] = -1;
+        }
+      }
+    }
+    this.status[e] = OWN;
+    this.tree[e] = -1;
+    if (u == v) {
+      // a cell between dots the solver has already joined changes no vertex
+      return;
+    }
+    this.merged.union(u, v);
+    int root = this.merged.find(u);
+    int gone = root == u ? v : u;
+    for (int k = 0; k < 2; k++) {
+      if (this.head[k][gone] != -1) {
+        if (this.head[k][root] == -1) {
+          this.head[k][root] = this.head[k][gone];
+        }
+        else {
+          this.nextEnd[this.last[k][root]] = this.head[k][gone];
+        }
+        this.last[k][root] = this.last[k][gone];
+        this.head[k][gone] = -1;
+        this.last[k][gone] = -1;
+      }
+    }
+  }
+
+  // walks tree k breadth first from the given root, until it reaches the given
+  // vertex if that is not -1, stamping every vertex reached with a new epoch,
+  // listing it in visit and noting the edge it was reached by in via
+  // returns the number of vertices reached
+  int reach(int k, int from, int to) {
+    this.epoch += 1;
+    this.stamp[from] = this.epoch;
+    this.via[from] = -1;
+    this.visit[0] = from;
+    int count = 1;
+    for (int i = 0; i < count && (to == -1 || this.stamp[to] != this.epoch); i++) {
+      int at = this.visit[i];
+      for (int end = this.firstLive(k, at); end != -1; end = this.nextLive(k, at, end)) {
+        int next = this.across(end);
+        if (this.stamp[next] != this.epoch) {
+          this.stamp[next] = this.epoch;
+          this.via[next] = end / 2;
+          this.visit[count] = next;
+          count += 1;
+        }
+      }
+    }
+    return count;
+  }
+
+  // the edge at the given end of the path between two contracted vertices in the
+  // given tree, or -1 if they are not joined
+  int edgeOnPath(int k, int from, int to) {
+    if (from == to) {
+      return -1;
+    }
+    this.reach(k, from, to);
+    return this.stamp[to] == this.epoch ? this.via[to] : -1;
+  }
+
+  // a move for a position where the trees have no free edge left: any open cell,
+  // claimed as an edge so that the graph keeps following the board
+  // returns -1 if the board is full
+  int fallbackMove() {
+    while (this.freeCursor < this.virtualEdge && this.status[this.freeCursor] != FREE) {
+      this.freeCursor += 1;
+    }
+    if (this.freeCursor == this.virtualEdge) {
+      return -1;
+    }
+    int e = this.freeCursor;
+    this.claimEdge(e);
+    return this.cellOf[e];
+  }
+}
+
+// splits the free edges of a solver's graph into two forests that are as large as
+// possible, with Edmonds' matroid partition algorithm
+// edges are first added greedily; an edge that closes a cycle in both forests is
+// then added by a breadth-first search for a chain of swaps between the forests
+class ForestPartition {
+  SpanningTreeSolver solver;
+  // the contracted vertex of each of the solver's vertices, renumbered from 0
+  int[] vertexOf;
+  int vertices;
+
+  // constructs a partition of the given solver's free edges
+  ForestPartition(SpanningTreeSolver solver) {
+    this.solver = solver;
+  }
+
+  // fills in solver.tree and returns whether both forests span the graph
+  boolean run() {
+    SpanningTreeSolver s = this.solver;
+    this.vertexOf = new int[s.vertexCount];
+    Arrays.fill(this.vertexOf, -1);
+    this.vertices = 0;
+    for (int v = 0; v < s.vertexCount; v++) {
+      int root = s.merged.find(v);
+      if (this.vertexOf[root] == -1) {
+        this.vertexOf[root] = this.vertices;
+        this.vertices += 1;
+      }
+      this.vertexOf[v] = this.vertexOf[root];
+    }
+
+    Arrays.fill(s.tree, (byte) -1);
+    UnionFind[] greedy = {new UnionFind(this.vertices), new UnionFind(this.vertices)};
+    ArrayList<Integer> leftOver = new ArrayList<Integer>();
+    for (int e = 0; e <= s.virtualEdge; e++) {
+      if (s.status[e] != SpanningTreeSolver.FREE) {
+        continue;
+      }
+      int u = this.end(e, true);
+      int v = this.end(e, false);
+      if (u == v) {
+        continue;
+      }
+      if (!greedy[0].connected(u, v)) {
+        greedy[0].union(u, v);
+        s.tree[e] = 0;
+      }
+      else if (!greedy[1].connected(u, v)) {
+        greedy[1].union(u, v);
+        s.tree[e] = 1;
+      }
+      else {
+        leftOver.add(e);
+      }
+    }
+    for (int e : leftOver) {
+      this.insert(e);
+    }
+
+    int[] counts = new int[2];
+    for (int e = 0; e <= s.virtualEdge; e++) {
+      if (s.tree[e] != -1) {
+        counts[s.tree[e]] += 1;
+      }
+    }
+    return counts[0] == this.vertices - 1 && counts[1] == this.vertices - 1;
+  }
+
+  // the contracted vertex at one end of the given edge
+  int end(int e, boolean first) {
+    return this.vertexOf[first ? this.solver.edgeU[e] : this.solver.edgeV[e]];
+  }
+
+  // tries to add the given edge to one of the forests by a chain of swaps
+  void insert(int start) {
+    SpanningTreeSolver s = this.solver;
+    int edges = s.virtualEdge + 1;
+    int[][] parents = {this.parentEdges(0), this.parentEdges(1)};
+    int[][] depths = {this.depths(0, parents[0]), this.depths(1, parents[1])};
+    int[] labelledBy = new int[edges];
+    Arrays.fill(labelledBy, -2);
+    int[] queue = new int[edges];
+    int head = 0;
+    int tail = 0;
+    labelledBy[start] = -1;
+    queue[tail] = start;
+    tail += 1;
+
+    while (head < tail) {
+      int x = queue[head];
+      head += 1;
+      for (int k = 0; k < 2; k++) {
+        if (s.tree[x] == k) {
+          continue;
+        }
+        int[] cycle = this.path(parents[k], depths[k], this.end(x, true), this.end(x, false));
+        if (cycle == null) {
+          this.augment(x, k, labelledBy, start);
+          return;
+        }
+        for (int y : cycle) {
+          if (labelledBy[y] == -2) {
+            labelledBy[y] = x;
+            queue[tail] = y;
+            tail += 1;
+          }
+        }
+      }
+    }
+  }
+
+  // moves the given edge into forest k and shifts every edge on its chain of
+  // labels into the forest the edge after it left
+  void augment(int x, int k, int[] labelledBy, int start) {
+    SpanningTreeSolver s = this.solver;
+    int target = k;
+    int at = x;
+    while (true) {
+      int left = s.tree[at];
+      s.tree[at] = (byte) target;
+      if (at == start) {
+        return;
+      }
+      target = left;
+      at = labelledBy[at];
+    }
+  }
+
+  // for every vertex, the edge to its parent in forest k, rooting each tree at its
+  // lowest vertex; roots get -1
+  int[] parentEdges(int k) {
+    SpanningTreeSolver s = this.solver;
+    int[] degree = new int[this.vertices + 1];
+    for (int e = 0; e <= s.virtualEdge; e++) {
+      if (s.tree[e] == k) {
+        degree[this.end(e, true) + 1] += 1;
+        degree[this.end(e, false) + 1] += 1;
+      }
+    }
+    for (int v = 0; v < this.vertices; v++) {
+      degree[v + 1] += degree[v];
+    }
+    int[] adjacent = new int[degree[this.vertices]];
+    int[] fill = Arrays.copyOf(degree, this.vertices);
+    for (int e = 0; e <= s.virtualEdge; e++) {
+      if (s.tree[e] == k) {
+        adjacent[fill[this.end(e, true)]] = e;
+        fill[this.end(e, true)] += 1;
+        adjacent[fill[this.end(e, false)]] = e;
+        fill[this.end(e, false)] += 1;
+      }
+    }
+
+    int[] parent = new int[this.vertices];
+    Arrays.fill(parent, -2);
+    int[] stack = new int[this.vertices];
+    for (int root = 0; root < this.vertices; root++) {
+      if (parent[root] != -2) {
+        continue;
+      }
+      parent[root] = -1;
+      int count = 0;
+      stack[count] = root;
+      count += 1;
+      while (count > 0) {
+        count -= 1;
+        int at = stack[count];
+        for (int i = degree[at]; i < degree[at + 1]; i++) {
+          int e = adjacent[i];
+          int to = this.end(e, true) == at ? this.end(e, false) : this.end(e, true);
+          if (parent[to] == -2) {
+            parent[to] = e;
+            stack[count] = to;
+            count += 1;
+          }
+        }
+      }
+    }
+    return parent;
+  }
+
+  // the depth of every vertex in forest k, given its parent edges
+  int[] depths(int k, int[] parent) {
+    int[] depth = new int[this.vertices];
+    Arrays.fill(depth, -1);
+    for (int v = 0; v < this.vertices; v++) {
+      this.depthOf(v, parent, depth);
+    }
+    return depth;
+  }
+
+  // fills in the depth of the given vertex, walking up to the first known depth
+  int depthOf(int v, int[] parent, int[] depth) {
+    int steps = 0;
+    int at = v;
+    while (depth[at] == -1 && parent[at] != -1) {
+      at = this.above(at, parent);
+      steps += 1;
+    }
+    int known = depth[at] == -1 ? 0 : depth[at];
+    depth[at] = known;
+    at = v;
+    while (depth[at] == -1) {
+      depth[at] = known + steps;
+      steps -= 1;
+      at = this.above(at, parent);
+    }
+    return depth[v];
+  }
+
+  // the vertex above the given one in its tree
+  int above(int v, int[] parent) {
+    int e = parent[v];
+    return this.end(e, true) == v ? this.end(e, false) : this.end(e, true);
+  }
+
+  // the edges on the path between two vertices of a forest, or null if they are
+  // in different trees
+  int[] path(int[] parent, int[] depth, int a, int b) {
+    ArrayList<Integer> fromA = new ArrayList<Integer>();
+    ArrayList<Integer> fromB = new ArrayList<Integer>();
+    while (depth[a] > depth[b]) {
+      fromA.add(parent[a]);
+      a = this.above(a, parent);
+    }
+    while (depth[b] > depth[a]) {
+      fromB.add(parent[b]);
+      b = this.above(b, parent);
+    }
+    while (a != b) {
+      if (parent[a] == -1 || parent[b] == -1) {
+        return null;
+      }
+      fromA.add(parent[a]);
+      a = this.above(a, parent);
+      fromB.add(parent[b]);
+      b = this.above(b, parent);
+    }
+    int[] result = new int[fromA.size() + fromB.size()];
+    for (int i = 0; i < fromA.size(); i++) {
+      result[i] = fromA.get(i);
+    }
+    for (int i = 0; i < fromB.size(); i++) {
+      result[fromA.size() + i] = fromB.get(i);
+    }
+    return result;
+  }
+}
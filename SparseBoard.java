@@ -0,0 +1,313 @@
+import java.awt.Color;
+import java.util.Arrays;
+
+import javalib.impworld.*;
+import javalib.worldimages.*;
+
+// a board for sizes too large to store cell by cell
+// every cell starts with the owner its (x, y) parity gives it, as in genBoard, so
+// only cells claimed since the start are stored, in 64 x 64 tiles that are
+// allocated the first time a cell in them is written
+// connectivity is a union-find over just the claimed cells and the dots next to
+// them, so memory grows with the number of moves instead of with size * size
+class SparseBoard {
+  static final int TILE_BITS = 6;
+  static final int TILE_SIZE = 1 << TILE_BITS;
+  static final int TILE_MASK = TILE_SIZE - 1;
+  // the union-find nodes of the four edges
+  static final int LEFT = 0;
+  static final int RIGHT = 1;
+  static final int TOP = 2;
+  static final int BOTTOM = 3;
+  // the steps to the top, right, bottom and left neighbors, as in Board.neighbor
+  static final int[] DX = {0, 1, 0, -1};
+  static final int[] DY = {-1, 0, 1, 0};
+
+  int size;
+  // keyed by the tile's column in the high 32 bits and its row in the low 32 bits
+  TileMap tiles;
+  SparseUnionFind sets;
+  int claims;
+
+  // constructs a board of the given size with nothing claimed
+  SparseBoard(int size) {
+    if (size < 3 || size % 2 == 0) {
+      throw new IllegalArgumentException(
+          "Board size must be an odd number greater than 3");
+    }
+    this.size = size;
+    this.tiles = new TileMap();
+    this.sets = new SparseUnionFind(4);
+    this.claims = 0;
+  }
+
+  // the key of the tile holding the given cell
+  long tileKey(int x, int y) {
+    return ((long) (x >>> TILE_BITS) << 32) | (y >>> TILE_BITS);
+  }
+
+  // the position of the given cell within its tile
+  int offset(int x, int y) {
+    return ((y & TILE_MASK) << TILE_BITS) | (x & TILE_MASK);
+  }
+
+  // the tile holding the given cell, allocated if it has not been written yet
+  SparseTile tileFor(int x, int y) {
+    long key = this.tileKey(x, y);
+    SparseTile tile = this.tiles.get(key);
+    if (tile == null) {
+      tile = new SparseTile();
+      this.tiles.put(key, tile);
+    }
+    return tile;
+  }
+
+  // the player who owns the given cell at the start of the game, as in Board
+  int startOwner(int x, int y) {
+    if (x % 2 != 0 && y % 2 == 0) {
+      return 2;
+    }
+    else if (x % 2 == 0 && y % 2 != 0) {
+      return 1;
+    }
+    return 0;
+  }
+
+  // is the given cell on the board
+  boolean contains(int x, int y) {
+    return x >= 0 && x < this.size && y >= 0 && y < this.size;
+  }
+
+  // the player who owns the given cell, or 0 for nobody
+  int owner(int x, int y) {
+    SparseTile tile = this.tiles.get(this.tileKey(x, y));
+    return tile == null ? this.startOwner(x, y) : tile.owner(this, x, y);
+  }
+
+  // can a player claim the given cell
+  boolean playable(int x, int y) {
+    return x > 0 && x < this.size - 1 && y > 0 && y < this.size - 1
+        && this.owner(x, y) == 0;
+  }
+
+  // gives the given cell to the given player and joins it with the same player's
+  // cells around it
+  // returns whether the cell could be claimed
+  boolean claim(int x, int y, int player) {
+    if (!this.playable(x, y)) {
+      return false;
+    }
+    this.tileFor(x, y).owners[this.offset(x, y)] = (byte) player;
+    this.claims += 1;
+    int node = this.node(x, y, player);
+    for (int side = 0; side < 4; side++) {
+      int nx = x + DX[side];
+      int ny = y + DY[side];
+      if (this.contains(nx, ny) && this.owner(nx, ny) == player) {
+        this.sets.union(node, this.node(nx, ny, player));
+      }
+    }
+    return true;
+  }
+
+  // the union-find node of the given cell of the given player, added the first
+  // time the cell is connected to anything, and joined with the player's edges
+  // when it lies on one
+  int node(int x, int y, int player) {
+    SparseTile tile = this.tileFor(x, y);
+    int offset = this.offset(x, y);
+    if (tile.nodes[offset] == 0) {
+      int node = this.sets.add();
+      tile.nodes[offset] = node + 1;
+      if (player == 1 && x == 0) {
+        this.sets.union(node, LEFT);
+      }
+      if (player == 1 && x == this.size - 1) {
+        this.sets.union(node, RIGHT);
+      }
+      if (player == 2 && y == 0) {
+        this.sets.union(node, TOP);
+      }
+      if (player == 2 && y == this.size - 1) {
+        this.sets.union(node, BOTTOM);
+      }
+    }
+    return tile.nodes[offset] - 1;
+  }
+
+  // the player who has connected their edges, or 0 if nobody has yet
+  int winner() {
+    if (this.sets.connected(LEFT, RIGHT)) {
+      return 1;
+    }
+    else if (this.sets.connected(TOP, BOTTOM)) {
+      return 2;
+    }
+    return 0;
+  }
+
+  // the number of tiles that have been allocated
+  int tileCount() {
+    return this.tiles.size();
+  }
+}
+
+// the tiles of a SparseBoard by key, in an open-addressing table of primitive keys
+// a lookup reads two arrays and boxes nothing, so following connections across a
+// huge board allocates nothing per cell
+// tiles are never removed, and the table doubles when it is half full
+class TileMap {
+  long[] keys;
+  SparseTile[] values;
+  int mask;
+  int size;
+
+  // constructs an empty map
+  TileMap() {
+    this.keys = new long[16];
+    this.values = new SparseTile[16];
+    this.mask = 15;
+    this.size = 0;
+  }
+
+  // the slot the given key is looked for first
+  int home(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & this.mask;
+  }
+
+  // the tile with the given key, or null if there is none
+  SparseTile get(long key) {
+    int slot = this.home(key);
+    while (this.values[slot] != null) {
+      if (this.keys[slot] == key) {
+        return this.values[slot];
+      }
+      slot = (slot + 1) & this.mask;
+    }
+    return null;
+  }
+
+  // stores the given tile under the given key, in place of any tile there before
+  void put(long key, SparseTile tile) {
+    int slot = this.home(key);
+    while (this.values[slot] != null && this.keys[slot] != key) {
+      slot = (slot + 1) & this.mask;
+    }
+    if (this.values[slot] == null) {
+      this.size += 1;
+    }
+    this.keys[slot] = key;
+    this.values[slot] = tile;
+    if (this.size * 2 > this.keys.length) {
+      this.grow();
+    }
+  }
+
+  // moves every tile into a table twice the size
+  void grow() {
+    long[] oldKeys = this.keys;
+    SparseTile[] oldValues = this.values;
+    this.keys = new long[oldKeys.length * 2];
+    this.values = new SparseTile[oldKeys.length * 2];
+    this.mask = this.keys.length - 1;
+    this.size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        this.put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  // the number of tiles stored
+  int size() {
+    return this.size;
+  }
+}
+
+// one 64 x 64 tile of a SparseBoard
+// owners holds the cells claimed in the tile, 0 where a cell still has its
+// starting owner, and nodes holds each cell's union-find node plus one, 0 for none
+class SparseTile {
+  byte[] owners;
+  int[] nodes;
+
+  // constructs a tile where every cell has its starting owner
+  SparseTile() {
+    this.owners = new byte[SparseBoard.TILE_SIZE * SparseBoard.TILE_SIZE];
+    this.nodes = new int[SparseBoard.TILE_SIZE * SparseBoard.TILE_SIZE];
+  }
+
+  // the owner of the given cell of the given board, which lies in this tile
+  int owner(SparseBoard board, int x, int y) {
+    int claimed = this.owners[board.offset(x, y)];
+    return claimed == 0 ? board.startOwner(x, y) : claimed;
+  }
+}
+
+// a union-find that grows one element at a time
+class SparseUnionFind extends UnionFind {
+  int count;
+
+  // constructs a union find with the given number of elements, each in its own set
+  SparseUnionFind(int size) {
+    super(Math.max(size, 16));
+    this.count = size;
+  }
+
+  // adds a new element in a set of its own and returns it
+  int add() {
+    if (this.count == this.parent.length) {
+      int grown = this.parent.length * 2;
+      this.parent = Arrays.copyOf(this.parent, grown);
+      this.rank = Arrays.copyOf(this.rank, grown);
+      for (int i = this.count; i < grown; i++) {
+        this.parent[i] = i;
+      }
+    }
+    this.count += 1;
+    return this.count - 1;
+  }
+}
+
+// draws a window of a SparseBoard, one tile at a time
+// each tile in the window is looked up once, and the cells of tiles that were
+// never written are drawn from their starting pattern
+class SparseRenderer {
+  SparseBoard board;
+  WorldImage[] cellImages;
+
+  // constructs a renderer for the given board
+  SparseRenderer(SparseBoard board) {
+    this.board = board;
+    this.cellImages = new WorldImage[] {
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.WHITE),
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.PINK),
+        new RectangleImage(50, 50, OutlineMode.SOLID, Color.MAGENTA)};
+  }
+
+  // places the cells in the given window of the board onto the scene, with the
+  // window's top left cell at the top left of the scene
+  void placeWindow(WorldScene ws, int left, int top, int columns, int rows) {
+    int right = Math.min(left + columns, this.board.size);
+    int bottom = Math.min(top + rows, this.board.size);
+    int bits = SparseBoard.TILE_BITS;
+    for (int ty = top >>> bits; ty <= (bottom - 1) >>> bits; ty++) {
+      for (int tx = left >>> bits; tx <= (right - 1) >>> bits; tx++) {
+        SparseTile tile = this.board.tiles.get(((long) tx << 32) | ty);
+        int y0 = Math.max(top, ty << bits);
+        int y1 = Math.min(bottom, (ty + 1) << bits);
+        int x0 = Math.max(left, tx << bits);
+        int x1 = Math.min(right, (tx + 1) << bits);
+        for (int y = y0; y < y1; y++) {
+          for (int x = x0; x < x1; x++) {
+            int owner = tile == null
+                ? this.board.startOwner(x, y)
+                : tile.owner(this.board, x, y);
+            ws.placeImageXY(this.cellImages[owner],
+                (x - left) * 50 + 25, (y - top) * 50 + 25);
+          }
+        }
+      }
+    }
+  }
+}
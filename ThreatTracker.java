@@ -0,0 +1,228 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// keeps, for each player, the set of free cells that would win the game for that
+// player if they claimed it: the cells the player to move must take, and the cells
+// the other player must block
+// a free cell wins for a player when it is next to (or part of) both of their goal
+// edges, counting as next to an edge any cell beside a group of theirs that already
+// reaches it. So for every goal there is one flag per cell: on a free cell it means
+// a neighboring group reaches the goal, and on an owned cell that the cell's own
+// group does.
+// a claim that makes a group reach a goal for the first time floods that group and
+// flags its free neighbors; every cell is flagged at most once per goal, so the
+// work over a whole game is linear in the board, and the sets are read for free
+// flags and claims are logged, so claims can be taken back newest first, as with
+// WinDetector
+class ThreatTracker {
+  // the kind of log entry for a claim; kinds 0 to 3 are flags set, by goal number
+  static final int CLAIMED = 4;
+
+  WinDetector wins;
+  byte[] owners;
+  Topology topology;
+  // the cells that can ever be claimed
+  boolean[] claimable;
+  // flags[goal][cell], by Topology's goal numbers
+  boolean[][] flags;
+  // the winning cells of each player, indexed by player: members holds sizes[p]
+  // cells in no order, and slot[p][cell] is where the cell is in members, or -1
+  int[][] members;
+  int[][] slot;
+  int[] sizes;
+  // entries of cell * 8 + kind, newest last
+  int[] history;
+  int length;
+  int[] stack;
+
+  // constructs a tracker that follows the given win detector's board, where the
+  // cells the given test accepts can be claimed when they are free
+  ThreatTracker(WinDetector wins, IntPredicate claimable) {
+    int cells = wins.owners.length;
+    this.wins = wins;
+    this.owners = wins.owners;
+    this.topology = wins.topology;
+    this.claimable = new boolean[cells];
+    for (int i = 0; i < cells; i++) {
+      this.claimable[i] = claimable.test(i);
+    }
+    this.flags = new boolean[4][cells];
+    this.members = new int[3][cells];
+    this.slot = new int[3][cells];
+    this.sizes = new int[3];
+    this.history = new int[16];
+    this.stack = new int[cells];
+    this.reset();
+  }
+
+  // constructs a tracker that follows the given win detector's board, where any
+  // free cell away from the border of a Board can be claimed, or any free cell at
+  // all on a board of another shape
+  ThreatTracker(WinDetector wins) {
+    this(wins, wins.board == null ? i -> true : wins.board::interior);
+  }
+
+  // works out every flag and set again from the board as it is now, and forgets
+  // the log
+  void reset() {
+    for (boolean[] goal : this.flags) {
+      Arrays.fill(goal, false);
+    }
+    for (int player = 1; player <= 2; player++) {
+      Arrays.fill(this.slot[player], -1);
+      this.sizes[player] = 0;
+    }
+    for (int i = 0; i < this.owners.length; i++) {
+      int player = this.owners[i];
+      if (player == 1 || player == 2) {
+        for (int goal = (player - 1) * 2; goal < player * 2; goal++) {
+          if (!this.flags[goal][i] && this.wins.sets.connected(i, this.wins.left + goal)) {
+            this.spread(i, goal, player);
+          }
+        }
+      }
+    }
+    for (int i = 0; i < this.owners.length; i++) {
+      this.sync(i, 1);
+      this.sync(i, 2);
+    }
+    this.length = 0;
+  }
+
+  // follows the claim of the cell at the given index
+  // must be called after the win detector has joined the cell
+  void claim(int index) {
+    int player = this.owners[index];
+    this.log(index, CLAIMED);
+    this.sync(index, 1);
+    this.sync(index, 2);
+    if (player == 1 || player == 2) {
+      for (int goal = (player - 1) * 2; goal < player * 2; goal++) {
+        if (this.wins.sets.connected(index, this.wins.left + goal)) {
+          this.spread(index, goal, player);
+        }
+      }
+    }
+  }
+
+  // flags the given cell, the unflagged part of its group and the free cells
+  // next to that part as reaching the given goal of the given player
+  // the cell itself is always visited, since it may have been flagged while free
+  // and its free neighbors have not been flagged yet
+  void spread(int start, int goal, int player) {
+    int degree = this.topology.degree;
+    int[] neighbors = this.topology.neighbors;
+    this.flag(start, goal);
+    this.stack[0] = start;
+    int size = 1;
+    while (size > 0) {
+      size -= 1;
+      int cell = this.stack[size];
+      for (int side = 0; side < degree; side++) {
+        int next = neighbors[cell * degree + side];
+        if (next == -1 || this.flags[goal][next]) {
+          continue;
+        }
+        if (this.owners[next] == player) {
+          this.flag(next, goal);
+          this.stack[size] = next;
+          size += 1;
+        }
+        else if (this.owners[next] == 0) {
+          this.flag(next, goal);
+          this.sync(next, player);
+        }
+      }
+    }
+  }
+
+  // sets the given flag of the given cell, logging it if it was not set
+  void flag(int cell, int goal) {
+    if (!this.flags[goal][cell]) {
+      this.flags[goal][cell] = true;
+      this.log(cell, goal);
+    }
+  }
+
+  // adds an entry to the log
+  void log(int cell, int kind) {
+    if (this.length == this.history.length) {
+      this.history = Arrays.copyOf(this.history, this.history.length * 2);
+    }
+    this.history[this.length] = cell * 8 + kind;
+    this.length += 1;
+  }
+
+  // would claiming the given cell win the game for the given player, worked out
+  // from the flags
+  boolean wouldWin(int player, int cell) {
+    int goal = (player - 1) * 2;
+    return this.owners[cell] == 0
+        && this.claimable[cell]
+        && (this.flags[goal][cell] || this.topology.atGoal(goal, cell))
+        && (this.flags[goal + 1][cell] || this.topology.atGoal(goal + 1, cell));
+  }
+
+  // puts the given cell in or out of the given player's set, as the flags say
+  void sync(int cell, int player) {
+    boolean should = this.wouldWin(player, cell);
+    int at = this.slot[player][cell];
+    if (should && at == -1) {
+      this.slot[player][cell] = this.sizes[player];
+      this.members[player][this.sizes[player]] = cell;
+      this.sizes[player] += 1;
+    }
+    else if (!should && at != -1) {
+      this.sizes[player] -= 1;
+      int last = this.members[player][this.sizes[player]];
+      this.members[player][at] = last;
+      this.slot[player][last] = at;
+      this.slot[player][cell] = -1;
+    }
+  }
+
+  // a point in the log that undo can return to, taken before a claim
+  int mark() {
+    return this.length;
+  }
+
+  // takes back every claim followed since the given mark, newest first
+  // must be called after the claimed cells have been freed on the board
+  void undo(int mark) {
+    while (this.length > mark) {
+      this.length -= 1;
+      int cell = this.history[this.length] / 8;
+      int kind = this.history[this.length] % 8;
+      if (kind == CLAIMED) {
+        this.sync(cell, 1);
+        this.sync(cell, 2);
+      }
+      else {
+        this.flags[kind][cell] = false;
+        this.sync(cell, kind / 2 + 1);
+      }
+    }
+  }
+
+  // would claiming the given cell win the game for the given player
+  boolean winning(int player, int index) {
+    return this.slot[player][index] != -1;
+  }
+
+  // the number of cells that would win the game for the given player
+  int count(int player) {
+    return this.sizes[player];
+  }
+
+  // one of the cells that would win the game for the given player, or -1
+  int first(int player) {
+    return this.sizes[player] == 0 ? -1 : this.members[player][0];
+  }
+
+  // copies the cells that would win the game for the given player into the given
+  // array, which must have room for them, and returns how many there are
+  int winningMoves(int player, int[] into) {
+    System.arraycopy(this.members[player], 0, into, 0, this.sizes[player]);
+    return this.sizes[player];
+  }
+}
@@ -0,0 +1,188 @@
+import java.util.function.IntPredicate;
+
+// the shape of a board: which cells are next to which, and which cells each
+// player's two goal edges are made of
+// cells are numbered row by row as on Board, and every neighbor is looked up in a
+// table built once, so the shape costs nothing while searching or joining cells
+// each goal edge is a bitmask with one bit per cell, so testing a cell against a
+// goal is one array read with no boxing
+// goals are numbered by end: end 0 and end 1 of player 1, then of player 2
+// a topology may be shared by many boards, and its goals should not be changed
+// once a win detector or search is using it
+class Topology {
+  int width;
+  int height;
+  int degree;
+  // the neighbor of every cell on every side, degree entries per cell, -1 where
+  // the cell is on that edge of the board
+  int[] neighbors;
+  long[][] goals;
+  IntPredicate[] goalTests;
+
+  // constructs a width X height topology where side s of a cell is the cell dx[s]
+  // columns and dy[s] rows away
+  // player 1 connects the left and right columns and player 2 the top and bottom
+  // rows, as in BridgIt
+  Topology(int width, int height, int[] dx, int[] dy) {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("A board must have at least one cell");
+    }
+    this.width = width;
+    this.height = height;
+    this.degree = dx.length;
+    this.neighbors = new int[width * height * this.degree];
+    for (int i = 0; i < width * height; i++) {
+      for (int side = 0; side < this.degree; side++) {
+        int x = this.x(i) + dx[side];
+        int y = this.y(i) + dy[side];
+        this.neighbors[i * this.degree + side] = this.contains(x, y) ? this.index(x, y) : -1;
+      }
+    }
+    this.goals = new long[4][];
+    this.goalTests = new IntPredicate[4];
+    this.setGoal(1, 0, i -> this.x(i) == 0);
+    this.setGoal(1, 1, i -> this.x(i) == this.width - 1);
+    this.setGoal(2, 0, i -> this.y(i) == 0);
+    this.setGoal(2, 1, i -> this.y(i) == this.height - 1);
+  }
+
+  // the number of cells on a board of this shape
+  int cellCount() {
+    return this.width * this.height;
+  }
+
+  // the column of the cell at the given index
+  int x(int index) {
+    return index % this.width;
+  }
+
+  // the row of the cell at the given index
+  int y(int index) {
+    return index / this.width;
+  }
+
+  // the index of the cell in the given column and row
+  int index(int x, int y) {
+    return x + y * this.width;
+  }
+
+  // is the given column and row on the board
+  boolean contains(int x, int y) {
+    return x >= 0 && x < this.width && y >= 0 && y < this.height;
+  }
+
+  // the index of the neighbor of the given cell on the given side, or -1 if the
+  // cell is on that edge of the board
+  int neighbor(int index, int side) {
+    return this.neighbors[index * this.degree + side];
+  }
+
+  // the number of the given end of the given player's goal
+  int goalNumber(int player, int end) {
+    if (player != 1 && player != 2) {
+      throw new IllegalArgumentException("Player must be 1 or 2");
+    }
+    if (end != 0 && end != 1) {
+      throw new IllegalArgumentException("A goal has ends 0 and 1");
+    }
+    return (player - 1) * 2 + end;
+  }
+
+  // makes the cells the given predicate accepts the given end of the given
+  // player's goal, in place of the cells there before
+  // the predicate is asked about every cell once, here, and never again
+  void setGoal(int player, int end, IntPredicate cells) {
+    int goal = this.goalNumber(player, end);
+    long[] bits = new long[(this.cellCount() + 63) / 64];
+    for (int i = 0; i < this.cellCount(); i++) {
+      if (cells.test(i)) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+    this.goals[goal] = bits;
+    this.goalTests[goal] = i -> (bits[i >>> 6] & (1L << i)) != 0;
+  }
+
+  // is the cell at the given index part of the goal with the given number
+  boolean atGoal(int goal, int index) {
+    return (this.goals[goal][index >>> 6] & (1L << index)) != 0;
+  }
+
+  // the given end of the given player's goal, as a test of cell indices that
+  // reads the goal's bitmask
+  // the same test is returned every time, so searches can use it without allocating
+  IntPredicate goal(int player, int end) {
+    return this.goalTests[this.goalNumber(player, end)];
+  }
+}
+
+// a grid of squares, where each cell has a neighbor above, to the right, below and
+// to the left, numbered clockwise from the top as in Board.neighbor
+class RectTopology extends Topology {
+  static final int[] DX = {0, 1, 0, -1};
+  static final int[] DY = {-1, 0, 1, 0};
+
+  // constructs a grid of the given width and height
+  RectTopology(int width, int height) {
+    super(width, height, DX, DY);
+  }
+}
+
+// a rhombus of hexagons, as in the game of Hex, where each cell has six neighbors:
+// the two above it, one on each side and the two below it, numbered clockwise
+// from the upper left
+// a row is shifted half a cell to the right of the row above it, so the cells
+// above are at columns x and x + 1, and the cells below at x - 1 and x
+class HexTopology extends Topology {
+  static final int[] DX = {0, 1, 1, 0, -1, -1};
+  static final int[] DY = {-1, -1, 0, 1, 1, 0};
+
+  // constructs a rhombus of the given width and height
+  HexTopology(int width, int height) {
+    super(width, height, DX, DY);
+  }
+}
+
+// a board of any shape where every cell starts free and either player may claim
+// any free cell, as in Hex
+// wins are tracked by a WinDetector over the board's owners and topology
+class TopologyBoard {
+  Topology topology;
+  byte[] owners;
+  WinDetector wins;
+  int claims;
+
+  // constructs an empty board of the given shape
+  TopologyBoard(Topology topology) {
+    this.topology = topology;
+    this.owners = new byte[topology.cellCount()];
+    this.wins = new WinDetector(this.owners, topology);
+    this.claims = 0;
+  }
+
+  // gives the free cell at the given index to the given player
+  // returns whether the cell was on the board and free
+  boolean claim(int index, int player) {
+    if (player != 1 && player != 2) {
+      throw new IllegalArgumentException("Player must be 1 or 2");
+    }
+    if (index < 0 || index >= this.owners.length || this.owners[index] != 0) {
+      return false;
+    }
+    this.owners[index] = (byte) player;
+    this.wins.claim(index);
+    this.claims += 1;
+    return true;
+  }
+
+  // the player who has connected their goal edges, or 0 if nobody has
+  int winner() {
+    if (this.wins.hasWon(1)) {
+      return 1;
+    }
+    else if (this.wins.hasWon(2)) {
+      return 2;
+    }
+    return 0;
+  }
+}
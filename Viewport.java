@@ -0,0 +1,106 @@
+import javalib.worldimages.*;
+
+// the part of the board a window shows, and how large its cells are drawn
+// the window never grows past MAX_PIXELS on a side, so the number of cells drawn
+// in a frame depends on the window and the zoom, not on the board size
+// a board that fits is shown whole at 50 pixels a cell, exactly as before
+class Viewport {
+  // the sizes a cell can be drawn at, in pixels, from farthest out to closest in
+  static final int[] ZOOMS = {5, 10, 25, 50, 100};
+  static final int DEFAULT_ZOOM = 3;
+  static final int MAX_PIXELS = 1000;
+
+  int boardSize;
+  int width;
+  int height;
+  int zoom;
+  int cellSize;
+  // the column and row of the cell at the top left of the window
+  int left;
+  int top;
+  // counts the changes to the view, so that scenes drawn through it can tell when
+  // they are out of date
+  int version;
+
+  // constructs the view of a new game on a board of the given size
+  Viewport(int boardSize) {
+    this.boardSize = boardSize;
+    this.width = Math.min(boardSize * ZOOMS[DEFAULT_ZOOM], MAX_PIXELS);
+    this.height = this.width;
+    this.reset();
+  }
+
+  // goes back to the starting zoom, at the top left of the board
+  void reset() {
+    this.zoom = DEFAULT_ZOOM;
+    this.cellSize = ZOOMS[DEFAULT_ZOOM];
+    this.left = 0;
+    this.top = 0;
+    this.version += 1;
+  }
+
+  // does the window show the whole board at the starting zoom
+  boolean showsWholeBoard() {
+    return this.cellSize == ZOOMS[DEFAULT_ZOOM]
+        && this.left == 0 && this.top == 0
+        && this.width == this.boardSize * this.cellSize
+        && this.height == this.width;
+  }
+
+  // the number of columns at least partly in the window
+  int columns() {
+    return Math.min((this.width + this.cellSize - 1) / this.cellSize, this.boardSize - this.left);
+  }
+
+  // the number of rows at least partly in the window
+  int rows() {
+    return Math.min((this.height + this.cellSize - 1) / this.cellSize, this.boardSize - this.top);
+  }
+
+  // the index of the cell under the given point of the window, or -1 if no cell is
+  int cellAt(Posn pos) {
+    if (pos.x < 0 || pos.y < 0 || pos.x >= this.width || pos.y >= this.height) {
+      return -1;
+    }
+    int x = this.left + pos.x / this.cellSize;
+    int y = this.top + pos.y / this.cellSize;
+    if (x >= this.boardSize || y >= this.boardSize) {
+      return -1;
+    }
+    return x + y * this.boardSize;
+  }
+
+  // zooms in by the given number of steps, or out for a negative number, keeping
+  // the cell in the middle of the window where it is
+  void zoomBy(int steps) {
+    int next = Math.max(0, Math.min(ZOOMS.length - 1, this.zoom + steps));
+    int centerX = this.left + this.width / 2 / this.cellSize;
+    int centerY = this.top + this.height / 2 / this.cellSize;
+    this.zoom = next;
+    this.cellSize = ZOOMS[next];
+    this.centerOn(centerX, centerY);
+  }
+
+  // moves the window by the given number of cells
+  void panBy(int columns, int rows) {
+    this.left += columns;
+    this.top += rows;
+    this.clamp();
+  }
+
+  // moves the window so the given cell is in its middle
+  void centerOn(int x, int y) {
+    this.left = x - this.width / 2 / this.cellSize;
+    this.top = y - this.height / 2 / this.cellSize;
+    this.clamp();
+  }
+
+  // keeps the window on the board, at the top left when the board is smaller
+  void clamp() {
+    int wholeColumns = this.width / this.cellSize;
+    int wholeRows = this.height / this.cellSize;
+    this.left = Math.max(0, Math.min(this.left, this.boardSize - wholeColumns));
+    this.top = Math.max(0, Math.min(this.top, this.boardSize - wholeRows));
+    this.version += 1;
+  }
+}
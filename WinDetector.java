@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+// a disjoint-set forest over the integers [0, size)
+// uses union by rank and path halving, so find and union run in
+// near-constant amortized time
+class UnionFind {
+  int[] parent;
+  byte[] rank;
+
+  // constructs a union find where every element is in its own set
+  UnionFind(int size) {
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    for (int i = 0; i < size; i++) {
+      this.parent[i] = i;
+    }
+  }
+
+  // puts every element back in its own set
+  void reset() {
+    for (int i = 0; i < this.parent.length; i++) {
+      this.parent[i] = i;
+      this.rank[i] = 0;
+    }
+  }
+
+  // returns the representative of the set containing i
+  int find(int i) {
+    while (this.parent[i] != i) {
+      this.parent[i] = this.parent[this.parent[i]];
+      i = this.parent[i];
+    }
+    return i;
+  }
+
+  // merges the sets containing a and b
+  void union(int a, int b) {
+    int rootA = this.find(a);
+    int rootB = this.find(b);
+    if (rootA == rootB) {
+      return;
+    }
+    if (this.rank[rootA] < this.rank[rootB]) {
+      this.parent[rootA] = rootB;
+    }
+    else if (this.rank[rootA] > this.rank[rootB]) {
+      this.parent[rootB] = rootA;
+    }
+    else {
+      this.parent[rootB] = rootA;
+      this.rank[rootA] += 1;
+    }
+  }
+
+  // are a and b in the same set
+  boolean connected(int a, int b) {
+    return this.find(a) == this.find(b);
+  }
+}
+
+// a disjoint-set forest whose unions can be taken back
+// find does not compress paths, so every union changes exactly one parent and
+// possibly one rank, and undoing a union only has to put those back
+// union by rank still keeps every find within O(log n) steps
+class RollbackUnionFind extends UnionFind {
+  // two entries per union: the root that was attached, and the root it was
+  // attached to times two, plus one if that root's rank went up
+  int[] history;
+  int length;
+
+  // constructs a union find where every element is in its own set
+  RollbackUnionFind(int size) {
+    super(size);
+    this.history = new int[16];
+    this.length = 0;
+  }
+
+  // puts every element back in its own set and forgets the history
+  void reset() {
+    super.reset();
+    this.length = 0;
+  }
+
+  // returns the representative of the set containing i, without changing the forest
+  int find(int i) {
+    while (this.parent[i] != i) {
+      i = this.parent[i];
+    }
+    return i;
+  }
+
+  // merges the sets containing a and b, remembering how
+  void union(int a, int b) {
+    int rootA = this.find(a);
+    int rootB = this.find(b);
+    if (rootA == rootB) {
+      return;
+    }
+    if (this.rank[rootA] < this.rank[rootB]) {
+      int swap = rootA;
+      rootA = rootB;
+      rootB = swap;
+    }
+    int bump = 0;
+    if (this.rank[rootA] == this.rank[rootB]) {
+      this.rank[rootA] += 1;
+      bump = 1;
+    }
+    this.parent[rootB] = rootA;
+    if (this.length + 2 > this.history.length) {
+      this.history = Arrays.copyOf(this.history, this.history.length * 2);
+    }
+    this.history[this.length] = rootB;
+    this.history[this.length + 1] = rootA * 2 + bump;
+    this.length += 2;
+  }
+
+  // a point in the history that rollback can return to
+  int mark() {
+    return this.length;
+  }
+
+  // undoes every union made since the given mark, newest first
+  void rollback(int mark) {
+    while (this.length > mark) {
+      this.length -= 2;
+      int child = this.history[this.length];
+      int root = this.history[this.length + 1];
+      this.parent[child] = child;
+      this.rank[root / 2] -= (byte) (root % 2);
+    }
+  }
+}
+
+// tracks which cells of a board are connected to each other and to the goal edges
+// of their player, so that a win can be detected without searching the board
+// the four goal edges are virtual nodes placed after the last cell, in the order
+// of Topology's goal numbers: on a BridgIt board player 1 connects LEFT to RIGHT
+// and player 2 connects TOP to BOTTOM
+// the detector reads owners straight from the board's array, and neighbors and
+// goals from its topology's tables, so a claim allocates nothing on any shape
+// claims can be taken back newest first, by rolling back to a mark
+class WinDetector {
+  Board board;
+  byte[] owners;
+  Topology topology;
+  RollbackUnionFind sets;
+  int left;
+  int right;
+  int top;
+  int bottom;
+
+  // constructs a win detector for the given board, connecting every cell that
+  // is already owned by a player
+  WinDetector(Board board) {
+    this(board.owners, board.topology());
+    this.board = board;
+  }
+
+  // constructs a win detector for a board of the given shape whose cells are
+  // owned as the given array says, connecting every cell already owned
+  // the array is read as it changes, so claims are made by writing to it and then
+  // calling claim
+  WinDetector(byte[] owners, Topology topology) {
+    int cells = topology.cellCount();
+    if (owners.length != cells) {
+      throw new IllegalArgumentException("There must be one owner per cell");
+    }
+    this.board = null;
+    this.owners = owners;
+    this.topology = topology;
+    this.sets = new RollbackUnionFind(cells + 4);
+    this.left = cells;
+    this.right = cells + 1;
+    this.top = cells + 2;
+    this.bottom = cells + 3;
+    this.connectAll();
+  }
+
+  // forgets every connection and joins the cells again as the board is now
+  void reset() {
+    this.sets.reset();
+    this.connectAll();
+  }
+
+  // joins every cell that is owned by a player
+  void connectAll() {
+    for (int i = 0; i < this.owners.length; i++) {
+      if (this.owners[i] != 0) {
+        this.claim(i);
+      }
+    }
+  }
+
+  // joins the cell at the given index with its neighbors of the same player
+  // and with any goal edge of that player the cell is part of
+  // must be called after the cell's player has been set
+  void claim(int index) {
+    int player = this.owners[index];
+    int degree = this.topology.degree;
+    int[] neighbors = this.topology.neighbors;
+
+    for (int side = 0; side < degree; side++) {
+      int neighbor = neighbors[index * degree + side];
+      if (neighbor != -1 && this.owners[neighbor] == player) {
+        this.sets.union(index, neighbor);
+      }
+    }
+
+    if (player == 1 || player == 2) {
+      int goal = (player - 1) * 2;
+      if (this.topology.atGoal(goal, index)) {
+        this.sets.union(index, this.left + goal);
+      }
+      if (this.topology.atGoal(goal + 1, index)) {
+        this.sets.union(index, this.left + goal + 1);
+      }
+    }
+  }
+
+  // a point that undo can return to, taken before a claim
+  int mark() {
+    return this.sets.mark();
+  }
+
+  // takes back every claim made since the given mark
+  // the cells' owners on the board are put back separately
+  void undo(int mark) {
+    this.sets.rollback(mark);
+  }
+
+  // has the given player connected their two goal edges
+  boolean hasWon(int player) {
+    if (player == 1) {
+      return this.sets.connected(this.left, this.right);
+    }
+    else {
+      return this.sets.connected(this.top, this.bottom);
+    }
+  }
+}
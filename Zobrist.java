@@ -0,0 +1,56 @@
+import java.util.SplittableRandom;
+
+// random keys for hashing board positions
+// the hash of a position is the XOR of the keys of every claimed cell, so a claim
+// or an undo changes the hash with a single XOR
+class Zobrist {
+  static final long SEED = 0x5EED;
+
+  // keys[player][index] is XORed in when the player owns the cell
+  long[][] keys;
+  // XORed in when player 2 is to move
+  long playerTwoToMove;
+
+  // constructs the keys for a board with the given number of cells
+  // the same seed always gives the same keys
+  Zobrist(int cellCount, long seed) {
+    SplittableRandom rand = new SplittableRandom(seed);
+    this.keys = new long[3][cellCount];
+    for (int player = 1; player <= 2; player++) {
+      for (int i = 0; i < cellCount; i++) {
+        this.keys[player][i] = rand.nextLong();
+      }
+    }
+    this.playerTwoToMove = rand.nextLong();
+  }
+
+  // constructs the keys every game and player uses for boards of the given board's
+  // size, so that their hashes can be compared and cached together
+  // boards of different sizes get different keys
+  Zobrist(Board board) {
+    this(board.cellCount(), SEED ^ board.cellCount());
+  }
+
+  // the key of the given player owning the cell at the given index
+  long key(int player, int index) {
+    return this.keys[player][index];
+  }
+
+  // hashes the cells of the board that have been claimed since the start,
+  // with the given player to move
+  // the starting cells of the board are the same in every game and are left out
+  long hash(Board board, int toMove) {
+    long result = toMove == 2 ? this.playerTwoToMove : 0L;
+    for (int i = 0; i < board.cellCount(); i++) {
+      if (board.interior(i) && board.taken(i) && this.isOpen(board, i)) {
+        result ^= this.keys[board.owner(i)][i];
+      }
+    }
+    return result;
+  }
+
+  // is the cell at the given index empty at the start of the game
+  boolean isOpen(Board board, int index) {
+    return board.startOwner(index) == 0;
+  }
+}